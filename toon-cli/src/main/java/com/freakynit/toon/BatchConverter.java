@@ -0,0 +1,225 @@
+package com.freakynit.toon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+final class BatchConverter {
+    private static final int QUEUED_PER_JOB = 4;
+
+    private final boolean encode;
+    private final ToonConfig config;
+    private final boolean pretty;
+    private final boolean ndjson;
+    private final int jobs;
+    private final PrintStream err;
+
+    private final AtomicLong converted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    private BatchConverter(boolean encode, ToonConfig config, boolean pretty, boolean ndjson, int jobs, PrintStream err) {
+        this.encode = encode;
+        this.config = config;
+        this.pretty = pretty;
+        this.ndjson = ndjson;
+        this.jobs = jobs;
+        this.err = err;
+    }
+
+    static BatchConverter encoder(ToonConfig config, boolean ndjson, int jobs, PrintStream err) {
+        return new BatchConverter(true, config, false, ndjson, jobs, err);
+    }
+
+    static BatchConverter decoder(boolean pretty, boolean ndjson, int jobs, PrintStream err) {
+        return new BatchConverter(false, null, pretty, ndjson, jobs, err);
+    }
+
+    static boolean isGlob(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') return true;
+        }
+        return false;
+    }
+
+    // Submits every job to a fixed pool; the bounded queue makes the walking thread run jobs itself when workers fall behind
+    long run(Stream<Job> files) throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(jobs, jobs, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobs * QUEUED_PER_JOB), new ThreadPoolExecutor.CallerRunsPolicy());
+        long start = System.nanoTime();
+        // With -o, --files-from and positional inputs keep only the file name, so two inputs can map to one output.
+        // The later one fails instead of racing the first for the file; only the walking thread touches the map.
+        Map<Path, Path> targets = new HashMap<>();
+        try {
+            files.forEach(job -> {
+                Path owner = targets.putIfAbsent(job.output.toAbsolutePath().normalize(), job.input);
+                if (owner != null) {
+                    fail(job, "output " + job.output + " is also the target of " + owner);
+                    return;
+                }
+                pool.execute(() -> convert(job));
+            });
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        report(System.nanoTime() - start);
+        return failed.get();
+    }
+
+    private void convert(Job job) {
+        boolean created = false;
+        try {
+            if (job.output.toAbsolutePath().normalize().equals(job.input.toAbsolutePath().normalize())) {
+                throw new IOException("output would overwrite the input");
+            }
+            Path parent = job.output.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            ConversionStats.CountingInputStream in = new ConversionStats.CountingInputStream(Conversions.openFile(job.input));
+            ConversionStats.CountingOutputStream out;
+            try {
+                out = new ConversionStats.CountingOutputStream(Conversions.createFile(job.output));
+                created = true;
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            convert(in, out);
+            bytesIn.add(in.getCount());
+            bytesOut.add(out.getCount());
+            converted.incrementAndGet();
+        } catch (Exception e) {
+            fail(job, e.getMessage());
+            if (created) {
+                try {
+                    Files.deleteIfExists(job.output);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void fail(Job job, String reason) {
+        failed.incrementAndGet();
+        err.println("FAILED " + job.input + ": " + reason);
+    }
+
+    private void convert(InputStream in, OutputStream out) throws IOException {
+        if (encode) {
+            Conversions.encode(in, out, config, ndjson, false);
+        } else {
+            Conversions.decode(in, out, pretty, ndjson, false);
+        }
+    }
+
+    private void report(long nanos) {
+        double seconds = nanos / 1e9;
+        long in = bytesIn.sum();
+        long out = bytesOut.sum();
+        err.printf("files:       %,d converted, %,d failed%n", converted.get(), failed.get());
+        err.printf("bytes in:    %,d%n", in);
+        err.printf("bytes out:   %,d%n", out);
+        err.printf("elapsed:     %.3f s%n", seconds);
+        err.printf("throughput:  %.1f MB/s, %.0f files/s%n",
+                seconds > 0 ? in / seconds / (1024 * 1024) : 0.0,
+                seconds > 0 ? (converted.get() + failed.get()) / seconds : 0.0);
+    }
+
+    static Stream<Job> directory(Path base, String include, Path outputDir, String extension) throws IOException {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + include);
+        return Files.walk(base)
+                .filter(Files::isRegularFile)
+                .filter(path -> matcher.matches(path.getFileName()))
+                .map(path -> new Job(path, outputFor(base, path, outputDir, extension)));
+    }
+
+    static Stream<Job> glob(String pattern, Path outputDir, String extension) throws IOException {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        Path base = globBase(pattern);
+        Path root = base == null ? Paths.get(".") : base;
+        Stream<Path> paths = Files.walk(root);
+        if (base == null) {
+            paths = paths.map(root::relativize);
+        }
+        Path relativeTo = base == null ? Paths.get("") : base;
+        return paths
+                .filter(Files::isRegularFile)
+                .filter(matcher::matches)
+                .map(path -> new Job(path, outputFor(relativeTo, path, outputDir, extension)));
+    }
+
+    static Stream<Job> list(BufferedReader reader, Path outputDir, String extension) {
+        return reader.lines()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .map(line -> {
+                    Path path = Paths.get(line);
+                    return new Job(path, outputFor(null, path, outputDir, extension));
+                });
+    }
+
+    static Stream<Job> files(List<String> paths, Path outputDir, String extension) throws IOException {
+        List<Stream<Job>> parts = new ArrayList<>();
+        for (String path : paths) {
+            if (isGlob(path)) {
+                parts.add(glob(path, outputDir, extension));
+            } else {
+                Path file = Paths.get(path);
+                parts.add(Stream.of(new Job(file, outputFor(null, file, outputDir, extension))));
+            }
+        }
+        return parts.stream().flatMap(part -> part);
+    }
+
+    // Keeps the layout below the walked base when an output directory is given, otherwise writes next to the input
+    private static Path outputFor(Path base, Path input, Path outputDir, String extension) {
+        Path relative = base == null ? input.getFileName() : base.relativize(input);
+        Path target = outputDir == null ? input : outputDir.resolve(relative);
+        String name = target.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return target.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + extension);
+    }
+
+    // The directory part of the pattern before its first wildcard, where the walk starts
+    private static Path globBase(String pattern) {
+        int end = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') break;
+            if (c == '/') end = i;
+        }
+        if (end == 0) {
+            return pattern.startsWith("/") ? Paths.get("/") : null;
+        }
+        return Paths.get(pattern.substring(0, end));
+    }
+
+    static final class Job {
+        final Path input;
+        final Path output;
+
+        Job(Path input, Path output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
+}
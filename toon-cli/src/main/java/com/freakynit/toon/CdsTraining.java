@@ -0,0 +1,31 @@
+package com.freakynit.toon;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Training run for the appcds profile: loads every class a typical encode and decode touches, then exits
+public class CdsTraining {
+    private static final String SAMPLE = "{\"id\":1,\"name\":\"Alice\",\"active\":true,\"score\":9.5,\"note\":null,"
+            + "\"tags\":[\"a\",\"b\",\"c\"],\"address\":{\"city\":\"Paris\",\"zip\":\"75001\"},"
+            + "\"rows\":[{\"x\":1,\"y\":\"p\"},{\"x\":2,\"y\":\"q\"}],\"mixed\":[1,{\"k\":\"v\"},[2,3]]}";
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("toon-cds");
+        Path json = dir.resolve("sample.json");
+        Path toon = dir.resolve("sample.toon");
+        Path back = dir.resolve("back.json");
+        try {
+            Files.write(json, SAMPLE.getBytes(StandardCharsets.UTF_8));
+            ToonCLI.main(new String[]{"encode", json.toString(), "-o", toon.toString(), "--stats"});
+            ToonCLI.main(new String[]{"decode", toon.toString(), "-o", back.toString(), "--pretty"});
+            ToonCLI.main(new String[]{"encode", dir.toString() + "/*.json", "-o", dir.resolve("batch").toString(), "-j", "1"});
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.freakynit.toon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class Conversions {
+    static final int IO_BUFFER = 1 << 16;
+
+    private Conversions() {
+    }
+
+    static InputStream openFile(Path path) throws IOException {
+        return Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    static OutputStream createFile(Path path) throws IOException {
+        return Channels.newOutputStream(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    static void encode(InputStream in, OutputStream out, ToonConfig config, boolean ndjson,
+                       boolean trailingNewline) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), IO_BUFFER);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER)) {
+            encode(reader, writer, config, ndjson);
+            if (trailingNewline) {
+                writer.write('\n');
+            }
+        }
+    }
+
+    static void decode(InputStream in, OutputStream out, boolean pretty, boolean ndjson,
+                       boolean trailingNewline) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), IO_BUFFER);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER)) {
+            decode(new ToonDecoder(), reader, writer, pretty, ndjson);
+            if (trailingNewline && !ndjson) {
+                writer.write('\n');
+            }
+        }
+    }
+
+    static void encode(BufferedReader reader, Writer writer, ToonConfig config, boolean ndjson) throws IOException {
+        if (ndjson) {
+            encodeLines(reader, writer, config);
+        } else {
+            ToonStreamWriter toon = new ToonStreamWriter(writer, config);
+            JsonToToon.convert(reader, toon, config.getLimits().getMaxDepth());
+            toon.flush();
+        }
+    }
+
+    static void decode(ToonDecoder decoder, BufferedReader reader, Writer writer, boolean pretty, boolean ndjson) throws IOException {
+        if (ndjson) {
+            decodeDocuments(decoder, reader, writer);
+        } else {
+            ToonToJson.convert(decoder, reader, writer, pretty);
+        }
+    }
+
+    // One JSON document per line in, TOON documents separated by a blank line out
+    private static void encodeLines(BufferedReader reader, Writer writer, ToonConfig config) throws IOException {
+        Writer documentWriter = new NonFlushingWriter(writer);
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (!first) {
+                writer.write("\n\n");
+            }
+            first = false;
+            ToonStreamWriter toon = new ToonStreamWriter(documentWriter, config);
+            JsonToToon.convert(new StringReader(line), toon, config.getLimits().getMaxDepth());
+            toon.flush();
+        }
+    }
+
+    private static void decodeDocuments(ToonDecoder decoder, BufferedReader reader, Writer writer) throws IOException {
+        StringBuilder document = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                writeDocument(decoder, document, writer);
+            } else {
+                document.append(line).append('\n');
+            }
+        }
+        writeDocument(decoder, document, writer);
+    }
+
+    private static void writeDocument(ToonDecoder decoder, StringBuilder document, Writer writer) throws IOException {
+        if (document.length() == 0) {
+            return;
+        }
+        ToonToJson.convert(decoder, new StringReader(document.toString()), writer, false);
+        writer.write('\n');
+        document.setLength(0);
+    }
+
+    private static final class NonFlushingWriter extends FilterWriter {
+        NonFlushingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.freakynit.toon;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class JsonToToon {
+    private static final int SPOOL_IN_MEMORY = 1024;
+
+    private JsonToToon() {
+    }
+
+    // Nesting deeper than maxDepth fails with an IOException instead of recursing until the stack runs out
+    static void convert(Reader json, ToonStreamWriter out, int maxDepth) throws IOException {
+        JsonReader in = new JsonReader(json);
+        in.setLenient(true);
+        JsonToken first;
+        try {
+            first = in.peek();
+        } catch (EOFException e) {
+            // JsonReader reports empty or whitespace-only input as EOF; like Gson.fromJson, treat it as null
+            first = JsonToken.END_DOCUMENT;
+        }
+        if (first == JsonToken.END_DOCUMENT) {
+            out.value(null);
+            return;
+        }
+        streamValue(in, out, 0, maxDepth);
+    }
+
+    static Object readTree(JsonReader in, int depth, int maxDepth) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                checkDepth(in, depth + 1, maxDepth);
+                Map<String, Object> map = new LinkedHashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (map.containsKey(name)) {
+                        throw duplicateKey(in);
+                    }
+                    map.put(name, readTree(in, depth + 1, maxDepth));
+                }
+                in.endObject();
+                return map;
+            case BEGIN_ARRAY:
+                checkDepth(in, depth + 1, maxDepth);
+                List<Object> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(readTree(in, depth + 1, maxDepth));
+                }
+                in.endArray();
+                return list;
+            case STRING:
+                return in.nextString();
+            case NUMBER:
+                String literal = in.nextString();
+                Number number = toNumber(literal);
+                if (number == null) {
+                    throw new IOException("Malformed number " + literal + " at " + in.getPath());
+                }
+                return number;
+            case BOOLEAN:
+                return in.nextBoolean();
+            case NULL:
+                in.nextNull();
+                return null;
+            default:
+                throw new IllegalStateException("Unexpected JSON token " + in.peek() + " at " + in.getPath());
+        }
+    }
+
+    static void writeTree(JsonWriter out, Object value) throws IOException {
+        if (value instanceof Map) {
+            out.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                out.name(entry.getKey().toString());
+                writeTree(out, entry.getValue());
+            }
+            out.endObject();
+        } else if (value instanceof List) {
+            out.beginArray();
+            for (Object item : (List<?>) value) {
+                writeTree(out, item);
+            }
+            out.endArray();
+        } else if (value instanceof Number) {
+            out.value((Number) value);
+        } else if (value instanceof Boolean) {
+            out.value((Boolean) value);
+        } else if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.toString());
+        }
+    }
+
+    private static void streamValue(JsonReader in, ToonStreamWriter out, int depth, int maxDepth) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.BEGIN_OBJECT) {
+            checkDepth(in, depth + 1, maxDepth);
+            in.beginObject();
+            out.beginObject();
+            Set<String> names = new HashSet<>();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (!names.add(name)) {
+                    throw duplicateKey(in);
+                }
+                out.key(name);
+                streamValue(in, out, depth + 1, maxDepth);
+            }
+            in.endObject();
+            out.endObject();
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            checkDepth(in, depth + 1, maxDepth);
+            streamArray(in, out, depth + 1, maxDepth);
+        } else {
+            out.value(readTree(in, depth, maxDepth));
+        }
+    }
+
+    // TOON has no meaning for a repeated key, and keeping either value would silently drop the other
+    private static IOException duplicateKey(JsonReader in) {
+        return new IOException("Duplicate key at " + in.getPath());
+    }
+
+    private static void checkDepth(JsonReader in, int depth, int maxDepth) throws IOException {
+        if (depth > maxDepth) {
+            throw new IOException("JSON nesting exceeds depth " + maxDepth + " at " + in.getPath());
+        }
+    }
+
+    // The array header needs the length and layout up front, so elements are spooled
+    // (to disk once past SPOOL_IN_MEMORY) and replayed after the closing bracket
+    private static void streamArray(JsonReader in, ToonStreamWriter out, int depth, int maxDepth) throws IOException {
+        ToonArrayShape shape = new ToonArrayShape();
+        try (Spool spool = new Spool()) {
+            in.beginArray();
+            while (in.hasNext()) {
+                Object item = readTree(in, depth, maxDepth);
+                shape.accept(item);
+                spool.add(item);
+            }
+            in.endArray();
+
+            switch (shape.layout()) {
+                case EMPTY:
+                    out.beginListArray(0);
+                    break;
+                case TABULAR:
+                    out.beginTabularArray(shape.headers(), shape.types(), shape.count());
+                    spool.replay(out::row);
+                    break;
+                case INLINE:
+                    out.beginInlineArray(shape.count());
+                    spool.replay(out::value);
+                    break;
+                default:
+                    out.beginListArray(shape.count());
+                    spool.replay(out::value);
+            }
+            out.endArray();
+        }
+    }
+
+    // A literal past the double range, or too small to be anything but a false zero, stays exact as a BigDecimal.
+    // Every number is a finite value JsonWriter can write, so elements read the same from memory and from the spool.
+    // Returns null for anything that is not a decimal literal, such as a lenient NaN or Infinity.
+    static Number toNumber(String literal) {
+        boolean integral = true;
+        boolean nonZero = false;
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c == '.') {
+                integral = false;
+            } else if (c == 'e' || c == 'E') {
+                integral = false;
+                break;
+            } else if (c >= '1' && c <= '9') {
+                nonZero = true;
+            }
+        }
+        try {
+            if (integral) {
+                try {
+                    return Long.parseLong(literal);
+                } catch (NumberFormatException e) {
+                    return new BigInteger(literal);
+                }
+            }
+            double value = Double.parseDouble(literal);
+            if (Double.isNaN(value)) {
+                return null;
+            }
+            if (Double.isInfinite(value) || (value == 0 && nonZero)) {
+                return new BigDecimal(literal);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private interface ItemConsumer {
+        void accept(Object item) throws IOException;
+    }
+
+    private static final class Spool implements Closeable {
+        private final List<Object> memory = new ArrayList<>();
+        private Path file;
+        private JsonWriter fileWriter;
+
+        void add(Object item) throws IOException {
+            if (file == null && memory.size() < SPOOL_IN_MEMORY) {
+                memory.add(item);
+                return;
+            }
+            if (file == null) {
+                file = Files.createTempFile("toon-spool-", ".json");
+                fileWriter = new JsonWriter(new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16));
+                fileWriter.beginArray();
+            }
+            writeTree(fileWriter, item);
+        }
+
+        void replay(ItemConsumer consumer) throws IOException {
+            for (Object item : memory) {
+                consumer.accept(item);
+            }
+            memory.clear();
+            if (file == null) {
+                return;
+            }
+
+            fileWriter.endArray();
+            fileWriter.close();
+            fileWriter = null;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                JsonReader in = new JsonReader(reader);
+                in.beginArray();
+                while (in.hasNext()) {
+                    // Already checked against the depth limit when it was spooled
+                    consumer.accept(readTree(in, 0, Integer.MAX_VALUE));
+                }
+                in.endArray();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileWriter != null) {
+                fileWriter.close();
+            }
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
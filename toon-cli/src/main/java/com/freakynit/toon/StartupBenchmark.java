@@ -0,0 +1,80 @@
+package com.freakynit.toon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Times a small stdin-to-stdout encode from process start to the first output byte, for each available launch mode
+public class StartupBenchmark {
+    private static final byte[] INPUT = "{\"name\":\"Alice\",\"tags\":[\"a\",\"b\"]}".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        Path jar = Paths.get(StartupBenchmark.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Path dir = jar.getParent();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        measure("jar", runs, Arrays.asList(java, "-jar", jar.toString(), "encode"));
+
+        Path archive = dir.resolve("toon-cli.jsa");
+        if (Files.exists(archive)) {
+            measure("jar + AppCDS", runs, Arrays.asList(java, "-XX:SharedArchiveFile=" + archive, "-Xshare:auto",
+                    "-jar", jar.toString(), "encode"));
+        } else {
+            System.out.println("jar + AppCDS   skipped, build with -Pappcds to create " + archive);
+        }
+
+        Path image = dir.resolve(File.separatorChar == '\\' ? "toon.exe" : "toon");
+        if (Files.isExecutable(image)) {
+            measure("native", runs, Arrays.asList(image.toString(), "encode"));
+        } else {
+            System.out.println("native         skipped, build with -Pnative to create " + image);
+        }
+    }
+
+    private static void measure(String label, int runs, List<String> command) throws IOException, InterruptedException {
+        run(command);
+        List<Long> firstByte = new ArrayList<>(runs);
+        List<Long> exit = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++) {
+            long[] times = run(command);
+            firstByte.add(times[0]);
+            exit.add(times[1]);
+        }
+        firstByte.sort(null);
+        exit.sort(null);
+        System.out.printf("%-14s first output: median %6.1f ms, min %6.1f ms   exit: median %6.1f ms%n",
+                label, firstByte.get(runs / 2) / 1e6, firstByte.get(0) / 1e6, exit.get(runs / 2) / 1e6);
+    }
+
+    private static long[] run(List<String> command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD);
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(INPUT);
+        }
+        long firstByte;
+        try (InputStream stdout = process.getInputStream()) {
+            if (stdout.read() < 0) {
+                throw new IOException(command.get(0) + " produced no output");
+            }
+            firstByte = System.nanoTime() - start;
+            stdout.transferTo(OutputStream.nullOutputStream());
+        }
+        int status = process.waitFor();
+        long exit = System.nanoTime() - start;
+        if (status != 0) {
+            throw new IOException(String.join(" ", command) + " exited with " + status);
+        }
+        return new long[]{firstByte, exit};
+    }
+}
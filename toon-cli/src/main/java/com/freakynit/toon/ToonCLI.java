@@ -1,12 +1,16 @@
 package com.freakynit.toon;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.apache.commons.cli.*;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class ToonCLI {
     private static final String VERSION = "0.9.0-beta1";
@@ -39,6 +43,10 @@ public class ToonCLI {
                 handleEncode(commandArgs);
             } else if ("decode".equals(command)) {
                 handleDecode(commandArgs);
+            } else if ("serve".equals(command)) {
+                handleServe(commandArgs);
+            } else if ("client".equals(command)) {
+                handleClient(commandArgs);
             } else {
                 System.err.println("Unknown command: " + command);
                 printHelp();
@@ -58,6 +66,9 @@ public class ToonCLI {
         options.addOption("i", "indent", true, "Indentation spaces (default: 2)");
         options.addOption("d", "delimiter", true, "Array delimiter (default: ,)");
         options.addOption("m", "marker", true, "Length marker prefix (default: none)");
+        options.addOption("t", "typed", false, "Write column types in tabular headers");
+        options.addOption(Option.builder().longOpt("stats").desc("Report throughput and peak memory").build());
+        addBatchOptions(options);
         options.addOption("h", "help", false, "Show help");
 
         CommandLineParser parser = new DefaultParser();
@@ -78,24 +89,22 @@ public class ToonCLI {
         if (cmd.hasOption("marker")) {
             config.setLengthMarker(cmd.getOptionValue("marker"));
         }
+        config.setTypedHeaders(cmd.hasOption("typed"));
 
-        String input;
-        String[] remaining = cmd.getArgs();
-        if (remaining.length > 0) {
-            input = new String(Files.readAllBytes(Paths.get(remaining[0])));
-        } else {
-            input = readStdin();
+        boolean ndjson = cmd.hasOption("ndjson");
+        if (isBatch(cmd)) {
+            runBatch(cmd, BatchConverter.encoder(config, ndjson, jobs(cmd), System.err),
+                    ndjson ? "*.ndjson" : "*.json", ".toon");
+            return;
         }
 
-        Gson gson = new Gson();
-        Object data = gson.fromJson(input, Object.class);
-
-        String encoded = Toon.encode(data, config);
+        ConversionStats stats = cmd.hasOption("stats") ? new ConversionStats() : null;
+        ConversionStats.CountingInputStream in = new ConversionStats.CountingInputStream(openInput(cmd.getArgs()));
+        ConversionStats.CountingOutputStream out = new ConversionStats.CountingOutputStream(openOutput(cmd));
+        Conversions.encode(in, out, config, ndjson, !cmd.hasOption("output"));
 
-        if (cmd.hasOption("output")) {
-            Files.write(Paths.get(cmd.getOptionValue("output")), encoded.getBytes());
-        } else {
-            System.out.println(encoded);
+        if (stats != null) {
+            stats.report(System.err, in.getCount(), out.getCount());
         }
     }
 
@@ -103,6 +112,8 @@ public class ToonCLI {
         Options options = new Options();
         options.addOption("o", "output", true, "Output file");
         options.addOption("p", "pretty", false, "Pretty print JSON");
+        options.addOption(Option.builder().longOpt("stats").desc("Report throughput and peak memory").build());
+        addBatchOptions(options);
         options.addOption("h", "help", false, "Show help");
 
         CommandLineParser parser = new DefaultParser();
@@ -113,40 +124,183 @@ public class ToonCLI {
             return;
         }
 
-        String input;
-        String[] remaining = cmd.getArgs();
-        if (remaining.length > 0) {
-            input = new String(Files.readAllBytes(Paths.get(remaining[0])));
-        } else {
-            input = readStdin();
+        boolean ndjson = cmd.hasOption("ndjson");
+        if (isBatch(cmd)) {
+            runBatch(cmd, BatchConverter.decoder(cmd.hasOption("pretty"), ndjson, jobs(cmd), System.err),
+                    "*.toon", ndjson ? ".ndjson" : ".json");
+            return;
         }
 
-        Object decoded = Toon.decode(input);
+        ConversionStats stats = cmd.hasOption("stats") ? new ConversionStats() : null;
+        ConversionStats.CountingInputStream in = new ConversionStats.CountingInputStream(openInput(cmd.getArgs()));
+        ConversionStats.CountingOutputStream out = new ConversionStats.CountingOutputStream(openOutput(cmd));
+        Conversions.decode(in, out, cmd.hasOption("pretty"), ndjson, !cmd.hasOption("output"));
 
-        Gson gson;
-        if (cmd.hasOption("pretty")) {
-            gson = new GsonBuilder().setPrettyPrinting().create();
-        } else {
-            gson = new Gson();
+        if (stats != null) {
+            stats.report(System.err, in.getCount(), out.getCount());
         }
+    }
 
-        String json = gson.toJson(decoded);
+    private static void handleServe(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt("port").hasArg().desc("Localhost port").build());
+        options.addOption(Option.builder().longOpt("warmup").hasArg().desc("Warm-up conversions before listening").build());
+        options.addOption(Option.builder().longOpt("max-connections").hasArg().desc("Connections served at once").build());
+        options.addOption(Option.builder().longOpt("timeout").hasArg().desc("Idle and per-request timeout in milliseconds").build());
+        options.addOption("h", "help", false, "Show help");
 
-        if (cmd.hasOption("output")) {
-            Files.write(Paths.get(cmd.getOptionValue("output")), json.getBytes());
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("help")) {
+            printServeHelp();
+            return;
+        }
+
+        int port = Integer.parseInt(cmd.getOptionValue("port", String.valueOf(ToonServer.DEFAULT_PORT)));
+        ToonServer.warmUp(Integer.parseInt(cmd.getOptionValue("warmup", "2000")));
+        int maxConnections = Integer.parseInt(cmd.getOptionValue("max-connections", String.valueOf(ToonServer.DEFAULT_CONNECTIONS)));
+        int timeoutMillis = Integer.parseInt(cmd.getOptionValue("timeout", String.valueOf(ToonServer.DEFAULT_TIMEOUT_MILLIS)));
+        try (ToonServer server = new ToonServer(port, maxConnections, timeoutMillis, System.err)) {
+            server.serve();
+        }
+    }
+
+    private static void handleClient(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption("o", "output", true, "Output file");
+        options.addOption("i", "indent", true, "Indentation spaces (default: 2)");
+        options.addOption("d", "delimiter", true, "Array delimiter (default: ,)");
+        options.addOption("m", "marker", true, "Length marker prefix (default: none)");
+        options.addOption("t", "typed", false, "Write column types in tabular headers");
+        options.addOption("p", "pretty", false, "Pretty print JSON");
+        options.addOption(Option.builder().longOpt("ndjson").desc("One JSON document per line").build());
+        options.addOption(Option.builder().longOpt("port").hasArg().desc("Server port").build());
+        options.addOption("h", "help", false, "Show help");
+
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmd = parser.parse(options, args);
+        String[] rest = cmd.getArgs();
+
+        if (cmd.hasOption("help") || rest.length == 0) {
+            printClientHelp();
+            return;
+        }
+
+        byte op;
+        if ("encode".equals(rest[0])) {
+            op = ToonServer.ENCODE;
+        } else if ("decode".equals(rest[0])) {
+            op = ToonServer.DECODE;
         } else {
-            System.out.println(json);
+            throw new IllegalArgumentException("Unknown client operation: " + rest[0]);
+        }
+
+        Map<String, String> request = new LinkedHashMap<>();
+        if (cmd.hasOption("indent")) request.put("indent", cmd.getOptionValue("indent"));
+        if (cmd.hasOption("delimiter")) request.put("delimiter", cmd.getOptionValue("delimiter"));
+        if (cmd.hasOption("marker")) request.put("marker", cmd.getOptionValue("marker"));
+        if (cmd.hasOption("typed")) request.put("typed", "true");
+        if (cmd.hasOption("pretty")) request.put("pretty", "true");
+        if (cmd.hasOption("ndjson")) request.put("ndjson", "true");
+
+        byte[] payload;
+        try (InputStream in = openInput(Arrays.copyOfRange(rest, 1, rest.length))) {
+            payload = in.readAllBytes();
+        }
+
+        int port = Integer.parseInt(cmd.getOptionValue("port", String.valueOf(ToonServer.DEFAULT_PORT)));
+        byte[] result;
+        try (ToonClient client = new ToonClient(port)) {
+            result = client.call(op, request, payload);
         }
+
+        try (OutputStream out = openOutput(cmd)) {
+            out.write(result);
+            if (!cmd.hasOption("output") && !(op == ToonServer.DECODE && cmd.hasOption("ndjson"))) {
+                out.write('\n');
+            }
+        }
+    }
+
+    private static void addBatchOptions(Options options) {
+        options.addOption("r", "recursive", true, "Convert every matching file below a directory");
+        options.addOption(Option.builder().longOpt("include").hasArg().desc("File name glob for --recursive").build());
+        options.addOption(Option.builder().longOpt("files-from").hasArg().desc("Read input paths from a file, or - for stdin").build());
+        options.addOption("j", "jobs", true, "Parallel conversions in batch mode");
+        options.addOption(Option.builder().longOpt("ndjson").desc("One JSON document per line").build());
+    }
+
+    private static boolean isBatch(CommandLine cmd) {
+        String[] args = cmd.getArgs();
+        return cmd.hasOption("recursive") || cmd.hasOption("files-from") || args.length > 1
+                || (args.length == 1 && BatchConverter.isGlob(args[0]));
+    }
+
+    private static int jobs(CommandLine cmd) {
+        int jobs = cmd.hasOption("jobs") ? Integer.parseInt(cmd.getOptionValue("jobs"))
+                : Runtime.getRuntime().availableProcessors();
+        if (jobs < 1) {
+            throw new IllegalArgumentException("--jobs must be at least 1");
+        }
+        return jobs;
+    }
+
+    private static void runBatch(CommandLine cmd, BatchConverter converter, String include, String extension) throws Exception {
+        Path outputDir = cmd.hasOption("output") ? Paths.get(cmd.getOptionValue("output")) : null;
+        long failures;
+        try (Stream<BatchConverter.Job> files = batchFiles(cmd, outputDir, include, extension)) {
+            failures = converter.run(files);
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Stream<BatchConverter.Job> batchFiles(CommandLine cmd, Path outputDir, String include, String extension) throws IOException {
+        if (cmd.hasOption("recursive")) {
+            return BatchConverter.directory(Paths.get(cmd.getOptionValue("recursive")),
+                    cmd.getOptionValue("include", include), outputDir, extension);
+        }
+        if (cmd.hasOption("files-from")) {
+            String source = cmd.getOptionValue("files-from");
+            BufferedReader reader = "-".equals(source)
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8);
+            return BatchConverter.list(reader, outputDir, extension).onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return BatchConverter.files(Arrays.asList(cmd.getArgs()), outputDir, extension);
+    }
+
+    private static InputStream openInput(String[] args) throws IOException {
+        if (args.length > 0) {
+            return Conversions.openFile(Paths.get(args[0]));
+        }
+        return System.in;
     }
 
-    private static String readStdin() throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line).append('\n');
+    private static OutputStream openOutput(CommandLine cmd) throws IOException {
+        if (cmd.hasOption("output")) {
+            return Conversions.createFile(Paths.get(cmd.getOptionValue("output")));
         }
-        return sb.toString();
+        // Keep stdout open for anything printed after the conversion
+        return new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
     }
 
     private static void printHelp() {
@@ -156,6 +310,8 @@ public class ToonCLI {
         System.out.println("\nCommands:");
         System.out.println("  encode    Encode JSON to TOON format");
         System.out.println("  decode    Decode TOON to JSON format");
+        System.out.println("  serve     Keep a warmed-up converter listening on a localhost port");
+        System.out.println("  client    Send one encode/decode request to a running server");
         System.out.println("\nOptions:");
         System.out.println("  -h, --help       Show help message");
         System.out.println("  -v, --version    Show version");
@@ -163,27 +319,71 @@ public class ToonCLI {
         System.out.println("  java -jar toon-cli/target/toon-cli-1.0.1.jar encode input.json -o output.toon");
         System.out.println("  java -jar toon-cli/target/toon-cli-1.0.1.jar decode input.toon --pretty");
         System.out.println("  echo '{\"name\":\"Alice\"}' | java -jar toon-cli/target/toon-cli-1.0.1.jar encode");
+        System.out.println("  java -jar toon-cli/target/toon-cli-1.0.1.jar encode --recursive data/ -o out/ -j 8");
+        System.out.println("  java -jar toon-cli/target/toon-cli-1.0.1.jar serve --port 7717");
+        System.out.println("  java -jar toon-cli/target/toon-cli-1.0.1.jar client encode input.json --port 7717");
     }
 
     private static void printEncodeHelp() {
         System.out.println("Encode JSON to TOON format");
         System.out.println("make sure build first using `mvn clean package`");
-        System.out.println("\nUsage: java -jar toon-cli/target/toon-cli-1.0.1.jar encode [file] [options]");
+        System.out.println("\nUsage: java -jar toon-cli/target/toon-cli-1.0.1.jar encode [file|glob...] [options]");
         System.out.println("\nOptions:");
-        System.out.println("  -o, --output <file>       Output file (default: stdout)");
+        System.out.println("  -o, --output <file>       Output file (default: stdout), or directory in batch mode");
         System.out.println("  -i, --indent <n>          Indentation spaces (default: 2)");
         System.out.println("  -d, --delimiter <char>    Array delimiter (default: ,)");
         System.out.println("  -m, --marker <prefix>     Length marker prefix (default: none)");
+        System.out.println("  -t, --typed               Write column types in tabular headers, e.g. {id:int,name:string}");
+        System.out.println("      --ndjson              Input has one JSON document per line");
+        System.out.println("  -r, --recursive <dir>     Convert every matching file below a directory");
+        System.out.println("      --include <glob>      File names to convert with --recursive (default: *.json)");
+        System.out.println("      --files-from <file>   Read input paths from a file, one per line (- for stdin)");
+        System.out.println("  -j, --jobs <n>            Parallel conversions in batch mode (default: CPU count)");
+        System.out.println("      --stats               Report throughput and peak memory on stderr");
         System.out.println("  -h, --help                Show this help");
     }
 
     private static void printDecodeHelp() {
         System.out.println("Decode TOON to JSON format");
         System.out.println("make sure build first using `mvn clean package`");
-        System.out.println("\nUsage: java -jar toon-cli/target/toon-cli-1.0.1.jar decode [file] [options]");
+        System.out.println("\nUsage: java -jar toon-cli/target/toon-cli-1.0.1.jar decode [file|glob...] [options]");
         System.out.println("\nOptions:");
-        System.out.println("  -o, --output <file>    Output file (default: stdout)");
+        System.out.println("  -o, --output <file>    Output file (default: stdout), or directory in batch mode");
         System.out.println("  -p, --pretty           Pretty print JSON");
+        System.out.println("      --ndjson           Write one JSON line per blank-line separated TOON document");
+        System.out.println("  -r, --recursive <dir>  Convert every matching file below a directory");
+        System.out.println("      --include <glob>   File names to convert with --recursive (default: *.toon)");
+        System.out.println("      --files-from <f>   Read input paths from a file, one per line (- for stdin)");
+        System.out.println("  -j, --jobs <n>         Parallel conversions in batch mode (default: CPU count)");
+        System.out.println("      --stats            Report throughput and peak memory on stderr");
         System.out.println("  -h, --help             Show this help");
     }
+
+    private static void printServeHelp() {
+        System.out.println("Keep a warmed-up converter listening on a localhost port");
+        System.out.println("make sure build first using `mvn clean package`");
+        System.out.println("\nUsage: java -jar toon-cli/target/toon-cli-1.0.1.jar serve [options]");
+        System.out.println("\nOptions:");
+        System.out.println("      --port <n>      Port on 127.0.0.1 (default: " + ToonServer.DEFAULT_PORT + ")");
+        System.out.println("      --warmup <n>    Warm-up conversions before listening (default: 2000)");
+        System.out.println("      --max-connections <n>  Connections served at once; more are refused (default: " + ToonServer.DEFAULT_CONNECTIONS + ")");
+        System.out.println("      --timeout <ms>  Close connections idle this long or slower to send a request (default: " + ToonServer.DEFAULT_TIMEOUT_MILLIS + ")");
+        System.out.println("  -h, --help          Show this help");
+    }
+
+    private static void printClientHelp() {
+        System.out.println("Send one encode/decode request to a running server");
+        System.out.println("make sure build first using `mvn clean package`");
+        System.out.println("\nUsage: java -jar toon-cli/target/toon-cli-1.0.1.jar client <encode|decode> [file] [options]");
+        System.out.println("\nOptions:");
+        System.out.println("  -o, --output <file>       Output file (default: stdout)");
+        System.out.println("  -i, --indent <n>          Indentation spaces (default: 2)");
+        System.out.println("  -d, --delimiter <char>    Array delimiter (default: ,)");
+        System.out.println("  -m, --marker <prefix>     Length marker prefix (default: none)");
+        System.out.println("  -t, --typed               Write column types in tabular headers");
+        System.out.println("  -p, --pretty              Pretty print JSON");
+        System.out.println("      --ndjson              One JSON document per line");
+        System.out.println("      --port <n>            Server port (default: " + ToonServer.DEFAULT_PORT + ")");
+        System.out.println("  -h, --help                Show this help");
+    }
 }
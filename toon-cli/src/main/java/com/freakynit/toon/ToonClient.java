@@ -0,0 +1,43 @@
+package com.freakynit.toon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+final class ToonClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    ToonClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    byte[] call(byte op, Map<String, String> options, byte[] payload) throws IOException {
+        ToonServer.writeRequest(out, op, options, payload);
+        int status = in.read();
+        if (status < 0) {
+            throw new IOException("Server closed the connection");
+        }
+        byte[] body = ToonServer.readFrame(in);
+        if (status != ToonServer.OK) {
+            throw new IOException("Server error: " + new String(body, StandardCharsets.UTF_8));
+        }
+        return body;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,355 @@
+package com.freakynit.toon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Request:  op byte ('E' encode, 'D' decode), u16 option count, option names and values
+//           as u16 length + UTF-8 bytes, i32 payload length, payload (UTF-8)
+// Response: status byte (0 ok, 1 error), i32 length, body (UTF-8 result or error message)
+final class ToonServer implements Closeable {
+    static final int DEFAULT_PORT = 7717;
+    static final byte ENCODE = 'E';
+    static final byte DECODE = 'D';
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+    static final int MAX_FRAME = 64 << 20;
+    static final int DEFAULT_CONNECTIONS = 64;
+    static final int DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private static final List<String> OPTIONS = Arrays.asList("indent", "delimiter", "marker", "typed", "pretty", "ndjson");
+
+    // Payloads come from other processes, so both directions run with the limits meant for untrusted input
+    private static final ToonConfig DECODE_CONFIG = new ToonConfig();
+
+    static {
+        DECODE_CONFIG.setLimits(ToonLimits.untrusted());
+    }
+
+    private final ServerSocket socket;
+    private final ExecutorService connections;
+    private final PrintStream log;
+    private final int timeoutMillis;
+
+    ToonServer(int port, PrintStream log) throws IOException {
+        this(port, DEFAULT_CONNECTIONS, DEFAULT_TIMEOUT_MILLIS, log);
+    }
+
+    // One thread per open connection, at most maxConnections; further connections get an error frame and are closed.
+    // A connection is closed once it has been idle for timeoutMillis or a request takes longer than that to arrive.
+    ToonServer(int port, int maxConnections, int timeoutMillis, PrintStream log) throws IOException {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1");
+        }
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("timeoutMillis must be at least 1");
+        }
+        this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.log = log;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger ids = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConnections, maxConnections, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "toon-serve-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        this.connections = pool;
+    }
+
+    int getPort() {
+        return socket.getLocalPort();
+    }
+
+    // Runs the same code paths requests use so the first real request does not pay for class loading and JIT
+    static void warmUp(int iterations) throws IOException {
+        String json = "{\"id\":1,\"name\":\"warm\",\"tags\":[\"a\",\"b\"],\"rows\":[{\"x\":1,\"y\":2.5},{\"x\":2,\"y\":null}]}";
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < iterations; i++) {
+            String toon = convert(ENCODE, options, json);
+            convert(DECODE, options, toon);
+        }
+    }
+
+    void serve() throws IOException {
+        log.println("Listening on " + socket.getInetAddress().getHostAddress() + ":" + getPort());
+        while (!socket.isClosed()) {
+            Socket client;
+            try {
+                client = socket.accept();
+            } catch (SocketException e) {
+                if (socket.isClosed()) return;
+                throw e;
+            }
+            try {
+                connections.execute(() -> handle(client));
+            } catch (RejectedExecutionException e) {
+                reject(client);
+            }
+        }
+    }
+
+    private void reject(Socket client) {
+        try (Socket connection = client;
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            writeFrame(out, ERROR, "Server busy, too many open connections".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.println("Rejected connection dropped: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        connections.shutdownNow();
+    }
+
+    private void handle(Socket client) {
+        try (Socket connection = client;
+             TimedInput timed = new TimedInput(connection, timeoutMillis);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(timed));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            connection.setTcpNoDelay(true);
+            int op;
+            while ((op = in.read()) >= 0) {
+                timed.startRequest();
+                Map<String, String> options = readOptions(in);
+                String payload = new String(readFrame(in), StandardCharsets.UTF_8);
+                byte status = OK;
+                byte[] body;
+                try {
+                    body = convert(op, options, payload).getBytes(StandardCharsets.UTF_8);
+                    if (body.length > MAX_FRAME) {
+                        throw new IOException(tooLarge());
+                    }
+                } catch (Exception | StackOverflowError e) {
+                    status = ERROR;
+                    body = (e.getMessage() == null ? e.toString() : e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                }
+                writeFrame(out, status, body);
+                timed.endRequest();
+            }
+        } catch (SocketTimeoutException e) {
+            log.println("Connection timed out: " + e.getMessage());
+        } catch (IOException e) {
+            log.println("Connection dropped: " + e.getMessage());
+        }
+    }
+
+    private static String convert(int op, Map<String, String> options, String payload) throws IOException {
+        for (String option : options.keySet()) {
+            if (!OPTIONS.contains(option)) {
+                throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        boolean ndjson = Boolean.parseBoolean(options.get("ndjson"));
+        BufferedReader reader = new BufferedReader(new StringReader(payload), Math.max(16, Math.min(payload.length(), Conversions.IO_BUFFER)));
+        BoundedWriter writer = new BoundedWriter(Math.max(16, payload.length()));
+        if (op == ENCODE) {
+            Conversions.encode(reader, writer, config(options), ndjson);
+        } else if (op == DECODE) {
+            Conversions.decode(new ToonDecoder(DECODE_CONFIG), reader, writer, Boolean.parseBoolean(options.get("pretty")), ndjson);
+        } else {
+            throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+        return writer.toString();
+    }
+
+    private static ToonConfig config(Map<String, String> options) {
+        ToonConfig config = new ToonConfig();
+        config.setLimits(ToonLimits.untrusted());
+        if (options.containsKey("indent")) {
+            config.setIndent(Integer.parseInt(options.get("indent")));
+        }
+        if (options.containsKey("delimiter")) {
+            config.setDelimiter(options.get("delimiter"));
+        }
+        if (options.containsKey("marker")) {
+            config.setLengthMarker(options.get("marker"));
+        }
+        config.setTypedHeaders(Boolean.parseBoolean(options.get("typed")));
+        return config;
+    }
+
+    private static String tooLarge() {
+        return "Response exceeds the " + MAX_FRAME + " byte frame limit";
+    }
+
+    // Fails as soon as the output passes MAX_FRAME chars (at least as many UTF-8 bytes) instead of building it in full
+    private static final class BoundedWriter extends Writer {
+        private final StringBuilder sb;
+
+        BoundedWriter(int capacity) {
+            this.sb = new StringBuilder(Math.min(capacity, MAX_FRAME));
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) throws IOException {
+            reserve(len);
+            sb.append(chars, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            reserve(len);
+            sb.append(str, off, off + len);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            reserve(1);
+            sb.append((char) c);
+        }
+
+        private void reserve(int len) throws IOException {
+            if (len > MAX_FRAME - sb.length()) {
+                throw new IOException(tooLarge());
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+
+    // Waiting for the next request may take timeoutMillis per read; once a request has started, all of it must
+    // arrive within timeoutMillis, so a client trickling bytes cannot hold a thread either
+    private static final class TimedInput extends FilterInputStream {
+        private final Socket connection;
+        private final int timeoutMillis;
+        private long deadline;
+        private boolean inRequest;
+
+        TimedInput(Socket connection, int timeoutMillis) throws IOException {
+            super(connection.getInputStream());
+            this.connection = connection;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        void startRequest() {
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            inRequest = true;
+        }
+
+        void endRequest() {
+            inRequest = false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            arm();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            arm();
+            return super.read(b, off, len);
+        }
+
+        private void arm() throws IOException {
+            if (!inRequest) {
+                connection.setSoTimeout(timeoutMillis);
+                return;
+            }
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left < 1) {
+                throw new SocketTimeoutException("Request not received within " + timeoutMillis + " ms");
+            }
+            connection.setSoTimeout((int) left);
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, byte op, Map<String, String> options, byte[] payload) throws IOException {
+        out.writeByte(op);
+        out.writeShort(options.size());
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            writeString(out, option.getKey());
+            writeString(out, option.getValue());
+        }
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    static void writeFrame(DataOutputStream out, byte status, byte[] body) throws IOException {
+        out.writeByte(status);
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+    }
+
+    static Map<String, String> readOptions(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            options.put(readString(in), readString(in));
+        }
+        return options;
+    }
+
+    // Standard UTF-8 rather than writeUTF's modified UTF-8, so clients in other languages can build requests
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Option of " + bytes.length + " bytes exceeds 65535");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Frame length " + length + " outside 0.." + MAX_FRAME);
+        }
+        byte[] frame = new byte[length];
+        try {
+            in.readFully(frame);
+        } catch (EOFException e) {
+            throw new IOException("Connection closed inside a " + length + " byte frame");
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,120 @@
+package com.freakynit.toon;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+final class ToonToJson implements ToonHandler {
+    private final JsonWriter out;
+
+    ToonToJson(Writer writer, boolean pretty) {
+        this.out = new JsonWriter(writer);
+        // Same output settings as the default Gson instance used previously
+        out.setSerializeNulls(false);
+        out.setHtmlSafe(true);
+        if (pretty) {
+            out.setIndent("  ");
+        }
+    }
+
+    static void convert(ToonDecoder decoder, Reader toon, Writer json, boolean pretty) throws IOException {
+        ToonToJson handler = new ToonToJson(json, pretty);
+        try {
+            decoder.decode(toon, handler);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void startObject() {
+        try {
+            out.beginObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void key(String key) {
+        try {
+            out.name(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void endObject() {
+        try {
+            out.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void startArray(int declaredLength) {
+        try {
+            out.beginArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void endArray() {
+        try {
+            out.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void value(Object value) {
+        try {
+            if (value == null) {
+                out.nullValue();
+            } else if (value instanceof Number) {
+                out.value((Number) value);
+            } else if (value instanceof Boolean) {
+                out.value((Boolean) value);
+            } else {
+                out.value(value.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void longValue(long value) {
+        try {
+            out.value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void doubleValue(double value) {
+        try {
+            out.value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void booleanValue(boolean value) {
+        try {
+            out.value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchConverterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void failsInputsThatShareAnOutputFile() throws Exception {
+        Path a = write("col/a/d.json", "{\"from\":\"a\"}");
+        Path b = write("col/b/d.json", "{\"from\":\"b\"}");
+        Path out = dir.resolve("out");
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        long failed = BatchConverter.encoder(new ToonConfig(), false, 2, new PrintStream(err, true, StandardCharsets.UTF_8))
+                .run(BatchConverter.files(Arrays.asList(a.toString(), b.toString()), out, ".toon"));
+
+        assertEquals(1, failed);
+        assertEquals("from: a", Files.readString(out.resolve("d.toon"), StandardCharsets.UTF_8));
+        String log = err.toString(StandardCharsets.UTF_8);
+        assertTrue(log.contains("FAILED " + b + ": output " + out.resolve("d.toon") + " is also the target of " + a), log);
+        assertTrue(log.contains("1 converted, 1 failed"), log);
+    }
+
+    @Test
+    void mirrorsDirectoriesWithoutCollisions() throws Exception {
+        write("col/a/d.json", "{\"from\":\"a\"}");
+        write("col/b/d.json", "{\"from\":\"b\"}");
+        Path out = dir.resolve("out");
+
+        long failed = BatchConverter.encoder(new ToonConfig(), false, 2, new PrintStream(new ByteArrayOutputStream()))
+                .run(BatchConverter.directory(dir.resolve("col"), "*.json", out, ".toon"));
+
+        assertEquals(0, failed);
+        assertEquals("from: a", Files.readString(out.resolve("a/d.toon"), StandardCharsets.UTF_8));
+        assertEquals("from: b", Files.readString(out.resolve("b/d.toon"), StandardCharsets.UTF_8));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path path = dir.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+        return path;
+    }
+}
@@ -0,0 +1,71 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonToToonTest {
+    @Test
+    void keepsNumbersPastTheDoubleRange() {
+        assertEquals(new BigDecimal("1e400"), JsonToToon.toNumber("1e400"));
+        assertEquals(new BigDecimal("-1e400"), JsonToToon.toNumber("-1e400"));
+        assertEquals(new BigDecimal("1e-400"), JsonToToon.toNumber("1e-400"));
+        assertEquals(0.0, JsonToToon.toNumber("0e-400"));
+        assertEquals(2.5, JsonToToon.toNumber("2.5"));
+        assertEquals(12L, JsonToToon.toNumber("12"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"NaN", "-NaN", "Infinity", "-Infinity"})
+    void rejectsLiteralsThatAreNotDecimals(String literal) {
+        assertNull(JsonToToon.toNumber(literal));
+    }
+
+    // Past SPOOL_IN_MEMORY elements the array is replayed from a temporary file; both paths must write the same numbers
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3000})
+    void writesTheSameNumbersFromMemoryAndFromTheSpool(int length) throws IOException {
+        String json = "{\"v\":[1e400" + ",1e-400".repeat(length - 1) + "]}";
+        String toon = convert(json);
+        assertEquals("v: [" + length + "]: 1e400" + ",1e-400".repeat(length - 1), toon);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"{\"a\":1,\"a\":2}", "[{\"a\":1,\"b\":{\"c\":1,\"c\":2}}]", "{\"k\":{\"a\":[],\"a\":[]}}"})
+    void rejectsDuplicateKeys(String json) {
+        IOException e = assertThrows(IOException.class, () -> convert(json));
+        assertTrue(e.getMessage().startsWith("Duplicate key at $"), e.getMessage());
+    }
+
+    @Test
+    void rejectsNestingPastTheLimit() throws IOException {
+        assertTrue(convert("{\"a\":{\"b\":1}}", 2).endsWith("\n  b: 1"));
+        IOException e = assertThrows(IOException.class, () -> convert("[[[1]]]", 2));
+        assertTrue(e.getMessage().contains("depth 2"), e.getMessage());
+        e = assertThrows(IOException.class, () -> convert("{\"a\":{\"b\":{}}}", 2));
+        assertTrue(e.getMessage().contains("depth 2"), e.getMessage());
+    }
+
+    private static String convert(String json) throws IOException {
+        return convert(json, new ToonConfig().getLimits().getMaxDepth());
+    }
+
+    private static String convert(String json, int maxDepth) throws IOException {
+        StringWriter writer = new StringWriter();
+        ToonStreamWriter toon = new ToonStreamWriter(writer, new ToonConfig());
+        JsonToToon.convert(new StringReader(json), toon, maxDepth);
+        toon.flush();
+        return writer.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ToonCLITest {
+    private InputStream stdin;
+    private PrintStream stdout;
+    private ByteArrayOutputStream captured;
+
+    @BeforeEach
+    void redirect() {
+        stdin = System.in;
+        stdout = System.out;
+        captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restore() {
+        System.setIn(stdin);
+        System.setOut(stdout);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " ", "\n", "  \t\r\n  \n"})
+    void encodesEmptyStdinAsNull(String input) {
+        assertEquals("null\n", run(input, "encode"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "   \n"})
+    void encodesEmptyNdjsonStdinAsNoDocuments(String input) {
+        assertEquals("\n", run(input, "encode", "--ndjson"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"{\"name\":\"Alice\"}", "  {\"name\":\"Alice\"}\n\n"})
+    void encodesStdin(String input) {
+        assertEquals("name: Alice\n", run(input, "encode"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"v: 1e400", "v: 1E+400"})
+    void decodesNumbersPastTheDoubleRange(String input) {
+        assertEquals("{\"v\":1E+400}\n", run(input, "decode"));
+    }
+
+    private String run(String input, String... args) {
+        System.setIn(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        ToonCLI.main(args);
+        System.out.flush();
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,150 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToonServerTest {
+    private static final int TIMEOUT_MILLIS = 2000;
+
+    private ToonServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new ToonServer(0, 1, TIMEOUT_MILLIS, new PrintStream(new ByteArrayOutputStream()));
+        Thread thread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException ignored) {
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void convertsRequests() throws IOException {
+        try (ToonClient client = new ToonClient(server.getPort())) {
+            assertEquals("name: Alice", call(client, ToonServer.ENCODE, "{\"name\":\"Alice\"}"));
+            assertEquals("{\"name\":\"Alice\"}", call(client, ToonServer.DECODE, "name: Alice"));
+        }
+    }
+
+    @Test
+    void decodesWithUntrustedLimits() throws IOException {
+        int depth = ToonLimits.untrusted().getMaxDepth() + 1;
+        StringBuilder toon = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            toon.append(" ".repeat(i * 2)).append('k').append(i).append(":\n");
+        }
+        toon.append(" ".repeat(depth * 2)).append("v: 1");
+
+        try (ToonClient client = new ToonClient(server.getPort())) {
+            IOException e = assertThrows(IOException.class, () -> call(client, ToonServer.DECODE, toon.toString()));
+            assertTrue(e.getMessage().contains("depth"), e.getMessage());
+            // The connection stays usable after an error response
+            assertEquals("{\"a\":1}", call(client, ToonServer.DECODE, "a: 1"));
+        }
+    }
+
+    @Test
+    void encodesWithUntrustedLimits() throws IOException {
+        String json = "[".repeat(100_000) + "]".repeat(100_000);
+
+        try (ToonClient client = new ToonClient(server.getPort())) {
+            IOException e = assertThrows(IOException.class, () -> call(client, ToonServer.ENCODE, json));
+            assertTrue(e.getMessage().contains("depth " + ToonLimits.untrusted().getMaxDepth()), e.getMessage());
+            assertEquals("a: 1", call(client, ToonServer.ENCODE, "{\"a\":1}"));
+        }
+    }
+
+    @Test
+    void readsOptionsAsStandardUtf8() throws IOException {
+        byte[] name = "k\uD83D\uDE00".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(request);
+        out.writeByte(ToonServer.ENCODE);
+        out.writeShort(1);
+        out.writeShort(name.length);
+        out.write(name);
+        out.writeShort(1);
+        out.write('1');
+        out.writeInt(2);
+        out.write("{}".getBytes(StandardCharsets.UTF_8));
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.getOutputStream().write(request.toByteArray());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(ToonServer.ERROR, in.readByte());
+            assertEquals("Unknown option: k\uD83D\uDE00", new String(ToonServer.readFrame(in), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void closesIdleConnections() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(TIMEOUT_MILLIS * 5);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    void closesConnectionsThatSendRequestsTooSlowly() throws IOException, InterruptedException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(TIMEOUT_MILLIS * 5);
+            OutputStream out = socket.getOutputStream();
+            out.write(ToonServer.ENCODE);
+            out.write(0);
+            // Each byte arrives well inside the timeout, but the request as a whole does not
+            long start = System.nanoTime();
+            try {
+                for (int i = 0; i < 8; i++) {
+                    Thread.sleep(TIMEOUT_MILLIS / 4);
+                    out.write(0);
+                    out.flush();
+                }
+            } catch (IOException closed) {
+                // The server may already have closed the socket
+            }
+            assertEquals(-1, socket.getInputStream().read());
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS * 4L));
+        }
+    }
+
+    @Test
+    void refusesConnectionsPastTheLimit() throws IOException {
+        try (ToonClient first = new ToonClient(server.getPort())) {
+            assertEquals("a: 1", call(first, ToonServer.ENCODE, "{\"a\":1}"));
+            try (ToonClient second = new ToonClient(server.getPort())) {
+                IOException e = assertThrows(IOException.class, () -> call(second, ToonServer.ENCODE, "{\"a\":1}"));
+                assertTrue(e.getMessage().contains("Server busy"), e.getMessage());
+            }
+        }
+    }
+
+    private static String call(ToonClient client, byte op, String payload) throws IOException {
+        byte[] body = client.call(op, Collections.emptyMap(), payload.getBytes(StandardCharsets.UTF_8));
+        return new String(body, StandardCharsets.UTF_8);
+    }
+}
@@ -16,4 +16,12 @@ public class Toon {
     public static Object decode(String toon, ToonConfig config) {
         return new ToonDecoder(config).decode(toon);
     }
+
+    public static byte[] encodeBinary(Object data) {
+        return new ToonBinary().encode(data);
+    }
+
+    public static Object decodeBinary(byte[] data) {
+        return new ToonBinary().decode(data);
+    }
 }
@@ -0,0 +1,103 @@
+package com.freakynit.toon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ToonArrayShape {
+    public enum Layout {
+        EMPTY,
+        TABULAR,
+        INLINE,
+        LIST
+    }
+
+    private long count;
+    private boolean tabular = true;
+    private boolean primitives = true;
+    private List<String> headers;
+    private Map<String, Integer> headerIndex;
+    private ToonSchema.Type[] types;
+
+    public static ToonArrayShape of(List<?> list) {
+        ToonArrayShape shape = new ToonArrayShape();
+        for (Object item : list) {
+            shape.accept(item);
+            if (!shape.tabular && !shape.primitives) {
+                shape.count = list.size();
+                break;
+            }
+        }
+        return shape;
+    }
+
+    public void accept(Object item) {
+        count++;
+        if (item instanceof Map || item instanceof List) {
+            primitives = false;
+        }
+        if (tabular) {
+            tabular = item instanceof Map && acceptRow((Map<?, ?>) item);
+        }
+    }
+
+    private boolean acceptRow(Map<?, ?> map) {
+        if (map.isEmpty()) return false;
+
+        if (headers == null) {
+            headers = new ArrayList<>(map.size());
+            headerIndex = new HashMap<>();
+            types = new ToonSchema.Type[map.size()];
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getValue() instanceof Map || entry.getValue() instanceof List) return false;
+                String key = entry.getKey().toString();
+                headerIndex.put(key, headers.size());
+                headers.add(key);
+                acceptCell(headers.size() - 1, entry.getValue());
+            }
+            return true;
+        }
+
+        if (map.size() != headerIndex.size()) return false;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (entry.getValue() instanceof Map || entry.getValue() instanceof List) return false;
+            Integer index = headerIndex.get(entry.getKey().toString());
+            if (index == null) return false;
+            acceptCell(index, entry.getValue());
+        }
+        return true;
+    }
+
+    private void acceptCell(int index, Object value) {
+        ToonSchema.Type type = ToonSchema.Type.of(value);
+        if (type == null || types[index] == type) return;
+        types[index] = types[index] == null ? type : ToonSchema.Type.ANY;
+    }
+
+    public Layout layout() {
+        if (count == 0) return Layout.EMPTY;
+        if (tabular) return Layout.TABULAR;
+        if (primitives) return Layout.INLINE;
+        return Layout.LIST;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public List<String> headers() {
+        return headers == null ? Collections.emptyList() : Collections.unmodifiableList(headers);
+    }
+
+    // Type shared by every non-null cell of each column, ANY where they differ or are all null
+    public List<ToonSchema.Type> types() {
+        if (headers == null) return Collections.emptyList();
+        List<ToonSchema.Type> result = new ArrayList<>(headers.size());
+        for (ToonSchema.Type type : types) {
+            result.add(type == null ? ToonSchema.Type.ANY : type);
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
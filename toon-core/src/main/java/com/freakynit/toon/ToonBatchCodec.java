@@ -0,0 +1,121 @@
+package com.freakynit.toon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ToonBatchCodec {
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+    private static final int CHUNKS_PER_CPU = 4;
+
+    private final ToonConfig config;
+    private final Executor executor;
+    private final ThreadLocal<Worker> workers;
+
+    public ToonBatchCodec() {
+        this(new ToonConfig());
+    }
+
+    public ToonBatchCodec(ToonConfig config) {
+        this(config, ToonExecutors.defaultExecutor());
+    }
+
+    public ToonBatchCodec(ToonConfig config, Executor executor) {
+        this.config = config;
+        this.executor = executor;
+        this.workers = ThreadLocal.withInitial(() -> new Worker(config));
+    }
+
+    public ToonConfig getConfig() {
+        return config;
+    }
+
+    public List<String> encodeAll(List<?> documents) {
+        Worker worker = workers.get();
+        List<String> result = new ArrayList<>(documents.size());
+        for (Object document : documents) {
+            result.add(worker.encode(document));
+        }
+        return result;
+    }
+
+    public List<String> encodeAll(Stream<?> documents) {
+        return documents.map(document -> workers.get().encode(document)).collect(Collectors.toList());
+    }
+
+    public List<Object> decodeAll(List<String> documents) {
+        Worker worker = workers.get();
+        List<Object> result = new ArrayList<>(documents.size());
+        for (String document : documents) {
+            result.add(worker.decoder.decode(document));
+        }
+        return result;
+    }
+
+    public List<Object> decodeAll(Stream<String> documents) {
+        return documents.map(document -> workers.get().decoder.decode(document)).collect(Collectors.toList());
+    }
+
+    public CompletableFuture<List<String>> encodeAllAsync(List<?> documents) {
+        return runChunked(documents, Worker::encode);
+    }
+
+    public CompletableFuture<List<Object>> decodeAllAsync(List<String> documents) {
+        return runChunked(documents, (worker, document) -> worker.decoder.decode(document));
+    }
+
+    // Each chunk takes its thread's worker for its whole run and writes into its own slice, so order is preserved
+    private <T, R> CompletableFuture<List<R>> runChunked(List<? extends T> documents, BiFunction<Worker, T, R> task) {
+        int size = documents.size();
+        if (size == 0) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        int chunks = Math.min(size, Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CPU);
+        int chunkSize = (size + chunks - 1) / chunks;
+        Object[] results = new Object[size];
+        List<CompletableFuture<Void>> futures = new ArrayList<>(chunks);
+
+        for (int from = 0; from < size; from += chunkSize) {
+            int start = from;
+            int end = Math.min(size, from + chunkSize);
+            futures.add(CompletableFuture.runAsync(() -> {
+                Worker worker = workers.get();
+                for (int i = start; i < end; i++) {
+                    results[i] = task.apply(worker, documents.get(i));
+                }
+            }, executor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    @SuppressWarnings("unchecked")
+                    List<R> list = (List<R>) Arrays.asList(results);
+                    return new ArrayList<>(list);
+                });
+    }
+
+    private static class Worker {
+        private final ToonEncoder encoder;
+        private final ToonDecoder decoder;
+        private StringBuilder buffer = new StringBuilder(256);
+
+        Worker(ToonConfig config) {
+            this.encoder = new ToonEncoder(config);
+            this.decoder = new ToonDecoder(config);
+        }
+
+        String encode(Object document) {
+            String encoded = encoder.encode(document, buffer);
+            if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+                buffer = new StringBuilder(256);
+            }
+            return encoded;
+        }
+    }
+}
@@ -0,0 +1,928 @@
+package com.freakynit.toon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary sibling of the text format for service-to-service transport. Same data model, no quoting or
+// number formatting: a 'T' 'B' version header, then one value. Lengths and counts are unsigned varints,
+// longs are zigzag varints, doubles are 8 raw bytes. Short strings and every key go through a dictionary
+// that both sides build in order of first use. Tabular arrays write their columns once, then bare cells.
+public class ToonBinary {
+    private static final byte MAGIC_0 = 'T';
+    private static final byte MAGIC_1 = 'B';
+    private static final byte VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int BIG_INTEGER = 5;
+    private static final int DECIMAL = 6;
+    private static final int STRING = 7;
+    private static final int STRING_NEW = 8;
+    private static final int STRING_REF = 9;
+    private static final int MAP = 10;
+    private static final int LIST = 11;
+    private static final int TABLE = 12;
+    // A table converted from a typed text header, with each column's declared type after the column names
+    private static final int TYPED_TABLE = 13;
+
+    private static final int MAX_DICTIONARY_STRING = 64;
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private final ToonConfig config;
+
+    public ToonBinary() {
+        this(new ToonConfig());
+    }
+
+    public ToonBinary(ToonConfig config) {
+        this.config = config;
+    }
+
+    public byte[] encode(Object data) {
+        Output out = new Output();
+        out.header();
+        out.value(data);
+        return out.toByteArray();
+    }
+
+    public void encode(Object data, OutputStream stream) throws IOException {
+        Output out = new Output();
+        out.header();
+        out.value(data);
+        stream.write(out.buffer, 0, out.size);
+    }
+
+    public Object decode(byte[] data) {
+        return input(data).document();
+    }
+
+    public Object decode(InputStream stream) throws IOException {
+        long max = Math.min(config.getLimits().getMaxDocumentLength(), Integer.MAX_VALUE - 8);
+        byte[] data = stream.readNBytes((int) max + 1);
+        if (data.length > max) {
+            throw new ToonException("Document exceeds " + max + " bytes", max);
+        }
+        return new Input(data, config.getLimits()).document();
+    }
+
+    // Decoder events go straight to binary, keeping the text's number types and key order without building a tree
+    public byte[] fromText(String toon) {
+        Output out = new Output();
+        out.header();
+        try {
+            new ToonDecoder(config).decode(toon, new TextToBinary(out, config.isTypedHeaders()));
+        } catch (ShortRow e) {
+            // Lenient decoding gives a row with fewer values than the header a smaller map, which no table can hold
+            return encode(new ToonDecoder(config).decode(toon));
+        }
+        return out.toByteArray();
+    }
+
+    // Replays the binary as ToonStreamWriter calls, so text written by ToonEncoder with this config and converted
+    // with fromText comes back unchanged
+    public String toText(byte[] data) {
+        StringWriter writer = new StringWriter(data.length * 2);
+        ToonStreamWriter out = new ToonStreamWriter(writer, config);
+        input(data).text(out, config);
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    private Input input(byte[] data) {
+        if (data.length > config.getLimits().getMaxDocumentLength()) {
+            throw new ToonException("Document exceeds " + config.getLimits().getMaxDocumentLength() + " bytes", 0);
+        }
+        return new Input(data, config.getLimits());
+    }
+
+    private static final class Output {
+        private byte[] buffer = new byte[256];
+        private int size;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        void header() {
+            ensure(3);
+            buffer[size++] = MAGIC_0;
+            buffer[size++] = MAGIC_1;
+            buffer[size++] = VERSION;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        void value(Object value) {
+            if (value == null) {
+                tag(NULL);
+            } else if (value instanceof String) {
+                string((String) value, false);
+            } else if (value instanceof Boolean) {
+                tag((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Number) {
+                number((Number) value);
+            } else if (value instanceof Date) {
+                string(ToonEncoder.ISO_FORMATTER.format(((Date) value).toInstant()), false);
+            } else if (value instanceof Map) {
+                map((Map<?, ?>) value);
+            } else if (value instanceof List) {
+                list((List<?>) value);
+            } else {
+                // ToonEncoder writes unsupported objects as null too
+                tag(NULL);
+            }
+        }
+
+        private void number(Number number) {
+            if (ToonNumbers.isIntegral(number)) {
+                longValue(number.longValue());
+            } else if (number instanceof Double) {
+                doubleValue(number.doubleValue());
+            } else if (number instanceof Float) {
+                // Through Float.toString so the text form keeps the float's own short digits
+                doubleValue(Double.parseDouble(number.toString()));
+            } else if (number instanceof BigInteger) {
+                tag(BIG_INTEGER);
+                bytes(((BigInteger) number).toByteArray());
+            } else if (number instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) number;
+                tag(DECIMAL);
+                varint(zigzag(decimal.scale()));
+                bytes(decimal.unscaledValue().toByteArray());
+            } else {
+                doubleValue(number.doubleValue());
+            }
+        }
+
+        private void map(Map<?, ?> map) {
+            tag(MAP);
+            varint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                string(entry.getKey().toString(), true);
+                value(entry.getValue());
+            }
+        }
+
+        private void list(List<?> list) {
+            String[] columns = orderedColumns(list);
+            if (columns != null) {
+                tableHeader(columns, list.size());
+                for (Object item : list) {
+                    for (Object cell : ((Map<?, ?>) item).values()) {
+                        value(cell);
+                    }
+                }
+                return;
+            }
+
+            // Rows that share the key set in another order still make a table, written through a column index
+            ToonArrayShape shape = !list.isEmpty() && list.get(0) instanceof Map ? ToonArrayShape.of(list) : null;
+            if (shape == null || shape.layout() != ToonArrayShape.Layout.TABULAR) {
+                tag(LIST);
+                varint(list.size());
+                for (Object item : list) {
+                    value(item);
+                }
+                return;
+            }
+
+            List<String> headers = shape.headers();
+            tableHeader(headers.toArray(new String[0]), list.size());
+            Map<String, Integer> index = new HashMap<>();
+            for (String header : headers) {
+                index.put(header, index.size());
+            }
+            Object[] cells = new Object[headers.size()];
+            for (Object item : list) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) item).entrySet()) {
+                    cells[index.get(entry.getKey().toString())] = entry.getValue();
+                }
+                for (Object cell : cells) {
+                    value(cell);
+                }
+            }
+        }
+
+        // The first item's keys when every item is a non-empty map of scalars with those keys in that order,
+        // which is how decoded and generated rows usually look; cells then go out in iteration order
+        private static String[] orderedColumns(List<?> list) {
+            if (list.isEmpty() || !(list.get(0) instanceof Map)) return null;
+            Map<?, ?> first = (Map<?, ?>) list.get(0);
+            if (first.isEmpty()) return null;
+            String[] columns = new String[first.size()];
+            for (Object item : list) {
+                if (!(item instanceof Map) || ((Map<?, ?>) item).size() != columns.length) return null;
+                int i = 0;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) item).entrySet()) {
+                    Object value = entry.getValue();
+                    if (value instanceof Map || value instanceof List) return null;
+                    String key = entry.getKey().toString();
+                    if (item == first) {
+                        columns[i] = key;
+                    } else if (!key.equals(columns[i])) {
+                        return null;
+                    }
+                    i++;
+                }
+            }
+            return columns;
+        }
+
+        private void tableHeader(String[] columns, int rows) {
+            tag(TABLE);
+            varint(columns.length);
+            for (String column : columns) {
+                string(column, true);
+            }
+            varint(rows);
+        }
+
+        private void string(String value, boolean key) {
+            if (key || value.length() <= MAX_DICTIONARY_STRING) {
+                Integer index = dictionary.get(value);
+                if (index != null) {
+                    tag(STRING_REF);
+                    varint(index);
+                    return;
+                }
+                if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+                    dictionary.put(value, dictionary.size());
+                    tag(STRING_NEW);
+                    utf8(value);
+                    return;
+                }
+            }
+            tag(STRING);
+            utf8(value);
+        }
+
+        // Matches String.getBytes(UTF_8), including '?' for unpaired surrogates
+        private void utf8(String s) {
+            int length = s.length();
+            int bytes = length;
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    bytes = utf8Length(s, i);
+                    break;
+                }
+            }
+            varint(bytes);
+            ensure(bytes);
+            byte[] b = buffer;
+            int p = size;
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    b[p++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[p++] = (byte) (0xc0 | c >> 6);
+                    b[p++] = (byte) (0x80 | c & 0x3f);
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    b[p++] = (byte) (0xf0 | cp >> 18);
+                    b[p++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                    b[p++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                    b[p++] = (byte) (0x80 | cp & 0x3f);
+                } else if (Character.isSurrogate(c)) {
+                    b[p++] = '?';
+                } else {
+                    b[p++] = (byte) (0xe0 | c >> 12);
+                    b[p++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    b[p++] = (byte) (0x80 | c & 0x3f);
+                }
+            }
+            size = p;
+        }
+
+        private static int utf8Length(String s, int from) {
+            int bytes = from;
+            int length = s.length();
+            for (int i = from; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    bytes++;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    bytes += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    bytes++;
+                } else {
+                    bytes += 3;
+                }
+            }
+            return bytes;
+        }
+
+        private void longValue(long value) {
+            tag(LONG);
+            varint(zigzag(value));
+        }
+
+        private void doubleValue(double value) {
+            tag(DOUBLE);
+            fixed64(Double.doubleToRawLongBits(value));
+        }
+
+        // One byte is kept for a count that is only known when its container ends; larger counts shift the
+        // container's bytes up, which is rare since it takes 128 entries
+        private int reserveCount() {
+            ensure(1);
+            return size++;
+        }
+
+        private void patchCount(int at, long count) {
+            int length = 1;
+            for (long rest = count >>> 7; rest != 0; rest >>>= 7) {
+                length++;
+            }
+            if (length > 1) {
+                ensure(length - 1);
+                System.arraycopy(buffer, at + 1, buffer, at + length, size - at - 1);
+                size += length - 1;
+            }
+            for (int i = 0; i < length - 1; i++) {
+                buffer[at + i] = (byte) (count & 0x7f | 0x80);
+                count >>>= 7;
+            }
+            buffer[at + length - 1] = (byte) count;
+        }
+
+        private void bytes(byte[] value) {
+            varint(value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, buffer, size, value.length);
+            size += value.length;
+        }
+
+        private void tag(int tag) {
+            ensure(1);
+            buffer[size++] = (byte) tag;
+        }
+
+        private void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                buffer[size++] = (byte) (value & 0x7f | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void fixed64(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        private static long zigzag(long value) {
+            return value << 1 ^ value >> 63;
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + bytes));
+            }
+        }
+    }
+
+    // Counts are patched in as each container ends: a text object does not announce its size, and outside strict
+    // mode an array may hold a different number of items than its header declares
+    private static final class TextToBinary implements ToonHandler {
+        private static final int ROW = -1;
+
+        private final Output out;
+        private final boolean typedHeaders;
+        private final List<Open> open = new ArrayList<>();
+
+        TextToBinary(Output out, boolean typedHeaders) {
+            this.out = out;
+            this.typedHeaders = typedHeaders;
+        }
+
+        @Override
+        public void startObject() {
+            Open parent = top();
+            if (parent != null && parent.kind == TABLE) {
+                // Row cells follow the table's columns, so the keys are not written again
+                parent.count++;
+                open.add(new Open(ROW, -1, parent.width));
+                return;
+            }
+            item(parent);
+            out.tag(MAP);
+            open.add(new Open(MAP, out.reserveCount(), 0));
+        }
+
+        @Override
+        public void key(String key) {
+            Open frame = top();
+            frame.count++;
+            if (frame.kind == MAP) {
+                out.string(key, true);
+            }
+        }
+
+        @Override
+        public void endObject() {
+            Open frame = open.remove(open.size() - 1);
+            if (frame.kind == ROW) {
+                if (frame.count != frame.width) throw new ShortRow();
+            } else {
+                out.patchCount(frame.countAt, frame.count);
+            }
+        }
+
+        @Override
+        public void startArray(int declaredLength) {
+            item(top());
+            out.tag(LIST);
+            open.add(new Open(LIST, out.reserveCount(), 0));
+        }
+
+        @Override
+        public void startTabularArray(int declaredLength, List<String> columns) {
+            startTabularArray(declaredLength, columns, null);
+        }
+
+        @Override
+        public void startTabularArray(int declaredLength, List<String> columns, List<ToonSchema.Type> types) {
+            // The declared types go along, since they need not match what the decoded cells would infer. With typed
+            // headers on, a header without any declares every column untyped.
+            if (types == null && typedHeaders) {
+                types = Collections.nCopies(columns.size(), ToonSchema.Type.ANY);
+            }
+            item(top());
+            out.tag(types == null ? TABLE : TYPED_TABLE);
+            out.varint(columns.size());
+            for (String column : columns) {
+                out.string(column, true);
+            }
+            if (types != null) {
+                for (ToonSchema.Type type : types) {
+                    out.tag(type.ordinal());
+                }
+            }
+            open.add(new Open(TABLE, out.reserveCount(), columns.size()));
+        }
+
+        @Override
+        public void endArray() {
+            Open frame = open.remove(open.size() - 1);
+            out.patchCount(frame.countAt, frame.count);
+        }
+
+        @Override
+        public void value(Object value) {
+            item(top());
+            out.value(value);
+        }
+
+        @Override
+        public void longValue(long value) {
+            item(top());
+            out.longValue(value);
+        }
+
+        @Override
+        public void doubleValue(double value) {
+            item(top());
+            out.doubleValue(value);
+        }
+
+        @Override
+        public void booleanValue(boolean value) {
+            item(top());
+            out.tag(value ? TRUE : FALSE);
+        }
+
+        // Object entries and row cells are counted by their keys, list items here
+        private void item(Open parent) {
+            if (parent != null && parent.kind == LIST) {
+                parent.count++;
+            }
+        }
+
+        private Open top() {
+            return open.isEmpty() ? null : open.get(open.size() - 1);
+        }
+    }
+
+    private static final class Open {
+        private final int kind;
+        private final int countAt;
+        private final int width;
+        private long count;
+
+        Open(int kind, int countAt, int width) {
+            this.kind = kind;
+            this.countAt = countAt;
+            this.width = width;
+        }
+    }
+
+    private static final class ShortRow extends RuntimeException {
+        ShortRow() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Containers are filled from an explicit stack, as in ToonDecoder, so nesting depth costs heap, not call stack
+    private static final class Input {
+        private final byte[] data;
+        private final ToonLimits limits;
+        private final List<String> dictionary = new ArrayList<>();
+        private final List<Frame> frames = new ArrayList<>();
+        private int position;
+        // Header of the last table read, for toText
+        private String[] tableColumns;
+        private List<ToonSchema.Type> tableTypes;
+
+        Input(byte[] data, ToonLimits limits) {
+            this.data = data;
+            this.limits = limits;
+        }
+
+        Object document() {
+            header();
+            Object root = tree();
+            end();
+            return root;
+        }
+
+        // Reads one value with everything below it
+        private Object tree() {
+            int base = frames.size();
+            Object value = value();
+            while (frames.size() > base) {
+                Frame frame = frames.get(frames.size() - 1);
+                if (frame.remaining == 0) {
+                    frames.remove(frames.size() - 1);
+                    continue;
+                }
+                frame.remaining--;
+                if (frame.map != null) {
+                    String key = string(tag());
+                    frame.map.put(key, value());
+                } else if (frame.columns == null) {
+                    frame.list.add(value());
+                } else {
+                    Map<String, Object> row = new LinkedHashMap<>((int) (frame.columns.length / 0.75f) + 1);
+                    for (String column : frame.columns) {
+                        int at = position;
+                        Object cell = value();
+                        if (cell instanceof Map || cell instanceof List) {
+                            throw new ToonException("Table cell holds a nested value", at);
+                        }
+                        row.put(column, cell);
+                    }
+                    frame.list.add(row);
+                }
+            }
+            return value;
+        }
+
+        void text(ToonStreamWriter out, ToonConfig config) {
+            header();
+            emit(out, null, config);
+            while (!frames.isEmpty()) {
+                Frame frame = frames.get(frames.size() - 1);
+                if (frame.remaining == 0) {
+                    frames.remove(frames.size() - 1);
+                    if (frame.kind == MAP) {
+                        out.endObject();
+                    } else {
+                        out.endArray();
+                    }
+                    continue;
+                }
+                frame.remaining--;
+                if (frame.kind == MAP) {
+                    String key = string(tag());
+                    out.key(key);
+                    emit(out, key, config);
+                } else {
+                    emit(out, null, config);
+                }
+            }
+            end();
+        }
+
+        private void emit(ToonStreamWriter out, String key, ToonConfig config) {
+            int at = position;
+            int tag = peek();
+            if (tag == TYPED_TABLE) {
+                List<?> rows = (List<?>) tree();
+                out.beginTabularArray(Arrays.asList(tableColumns), tableTypes, rows.size());
+                for (Object row : rows) {
+                    out.row(row);
+                }
+                out.endArray();
+            } else if (tag == TABLE || tag == LIST && key != null && config.getSchema(key) != null) {
+                // Tables are flat, and writeList picks their column types and any registered schema
+                out.value(tree());
+            } else if (tag == MAP) {
+                position++;
+                int count = count(1, at);
+                out.beginObject();
+                push(new Frame(MAP, null, null, null, count), at);
+                if (count == 0) out.endObject();
+            } else if (tag == LIST) {
+                position++;
+                int count = count(1, at);
+                if (count > 0 && scalarsAhead(count)) {
+                    out.beginInlineArray(count);
+                } else {
+                    out.beginListArray(count);
+                }
+                push(new Frame(LIST, null, null, null, count), at);
+                if (count == 0) out.endArray();
+            } else {
+                out.value(value());
+            }
+        }
+
+        // Whether the next count values are all scalars, which the text form writes as an inline array
+        private boolean scalarsAhead(int count) {
+            int start = position;
+            try {
+                for (int i = 0; i < count; i++) {
+                    int at = position;
+                    switch (tag()) {
+                        case NULL:
+                        case FALSE:
+                        case TRUE:
+                            break;
+                        case LONG:
+                        case STRING_REF:
+                            varint();
+                            break;
+                        case DOUBLE:
+                            fixed64();
+                            break;
+                        case DECIMAL:
+                            varint();
+                            skip(at);
+                            break;
+                        case BIG_INTEGER:
+                        case STRING:
+                        case STRING_NEW:
+                            skip(at);
+                            break;
+                        default:
+                            return false;
+                    }
+                }
+                return true;
+            } finally {
+                position = start;
+            }
+        }
+
+        private void header() {
+            if (data.length < 3 || data[0] != MAGIC_0 || data[1] != MAGIC_1) {
+                throw new ToonException("Not binary TOON", 0);
+            }
+            if (data[2] != VERSION) {
+                throw new ToonException("Unsupported binary TOON version " + data[2], 2);
+            }
+            position = 3;
+        }
+
+        private void end() {
+            if (position != data.length) {
+                throw new ToonException((data.length - position) + " bytes after the document", position);
+            }
+        }
+
+        private Object value() {
+            int at = position;
+            int tag = tag();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case LONG: {
+                    long raw = varint();
+                    return raw >>> 1 ^ -(raw & 1);
+                }
+                case DOUBLE:
+                    return Double.longBitsToDouble(fixed64());
+                case BIG_INTEGER:
+                    return new BigInteger(magnitude(at));
+                case DECIMAL: {
+                    long raw = varint();
+                    long scale = raw >>> 1 ^ -(raw & 1);
+                    if (scale != (int) scale) {
+                        throw new ToonException("Decimal scale " + scale + " out of range", at);
+                    }
+                    return new BigDecimal(new BigInteger(magnitude(at)), (int) scale);
+                }
+                case STRING:
+                case STRING_NEW:
+                case STRING_REF:
+                    return string(tag);
+                case MAP: {
+                    int count = count(1, at);
+                    Map<String, Object> map = new LinkedHashMap<>((int) (count / 0.75f) + 1);
+                    push(new Frame(MAP, map, null, null, count), at);
+                    return map;
+                }
+                case LIST: {
+                    int count = count(1, at);
+                    List<Object> list = new ArrayList<>(count);
+                    push(new Frame(LIST, null, list, null, count), at);
+                    return list;
+                }
+                case TABLE:
+                case TYPED_TABLE:
+                    return table(tag, at);
+                default:
+                    throw new ToonException("Unknown tag " + tag, at);
+            }
+        }
+
+        private List<Object> table(int tag, int at) {
+            int width = count(1, at);
+            if (width == 0) {
+                throw new ToonException("Table without columns", at);
+            }
+            String[] columns = new String[width];
+            for (int i = 0; i < width; i++) {
+                columns[i] = string(tag());
+            }
+            tableColumns = columns;
+            tableTypes = null;
+            if (tag == TYPED_TABLE) {
+                ToonSchema.Type[] all = ToonSchema.Type.values();
+                tableTypes = new ArrayList<>(width);
+                for (int i = 0; i < width; i++) {
+                    int type = tag();
+                    if (type >= all.length) {
+                        throw new ToonException("Unknown column type " + type, position - 1);
+                    }
+                    tableTypes.add(all[type]);
+                }
+            }
+            // Every cell takes at least one byte, which bounds the row count before anything is allocated
+            int rows = count(width, at);
+            List<Object> list = new ArrayList<>(rows);
+            push(new Frame(TABLE, null, list, columns, rows), at);
+            return list;
+        }
+
+        private void push(Frame frame, int at) {
+            if (frames.size() >= limits.getMaxDepth()) {
+                throw new ToonException("Nesting exceeds depth " + limits.getMaxDepth(), at);
+            }
+            if (frame.remaining > 0) {
+                frames.add(frame);
+            }
+        }
+
+        // A declared count has to fit in the bytes that are left, so corrupt input cannot force a huge allocation
+        private int count(int minBytesEach, int at) {
+            long count = varint();
+            if (count < 0 || count > limits.getMaxArrayLength()) {
+                throw new ToonException("Container declares " + Long.toUnsignedString(count) + " entries, limit is " + limits.getMaxArrayLength(), at);
+            }
+            if (count * minBytesEach > data.length - position) {
+                throw new ToonException("Container declares " + count + " entries but only "
+                        + (data.length - position) + " bytes remain", at);
+            }
+            return (int) count;
+        }
+
+        private String string(int tag) {
+            int at = position - 1;
+            if (tag == STRING_REF) {
+                long index = varint();
+                if (index < 0 || index >= dictionary.size()) {
+                    throw new ToonException("String reference " + Long.toUnsignedString(index) + " past dictionary size " + dictionary.size(), at);
+                }
+                return dictionary.get((int) index);
+            }
+            if (tag != STRING && tag != STRING_NEW) {
+                throw new ToonException("Expected a string, found tag " + tag, at);
+            }
+            int length = length(at);
+            if (length > limits.getMaxStringLength()) {
+                throw new ToonException("String exceeds " + limits.getMaxStringLength() + " bytes", at);
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            if (tag == STRING_NEW) {
+                if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+                    throw new ToonException("Dictionary exceeds " + MAX_DICTIONARY_SIZE + " strings", at);
+                }
+                dictionary.add(value);
+            }
+            return value;
+        }
+
+        private byte[] magnitude(int at) {
+            int length = length(at);
+            if (length == 0 || length > limits.getMaxStringLength()) {
+                throw new ToonException("Number takes " + length + " bytes", at);
+            }
+            byte[] value = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return value;
+        }
+
+        private void skip(int at) {
+            int length = length(at);
+            position += length;
+        }
+
+        private int length(int at) {
+            long length = varint();
+            if (length < 0 || length > data.length - position) {
+                throw new ToonException("Length " + Long.toUnsignedString(length) + " runs past the end of the input", at);
+            }
+            return (int) length;
+        }
+
+        private int peek() {
+            if (position >= data.length) {
+                throw new ToonException("Unexpected end of input", position);
+            }
+            return data[position] & 0xff;
+        }
+
+        private int tag() {
+            if (position >= data.length) {
+                throw new ToonException("Unexpected end of input", position);
+            }
+            return data[position++] & 0xff;
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new ToonException("Unexpected end of input", position);
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new ToonException("Varint longer than 10 bytes", position);
+        }
+
+        private long fixed64() {
+            if (data.length - position < 8) {
+                throw new ToonException("Unexpected end of input", position);
+            }
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (data[position++] & 0xff);
+            }
+            return value;
+        }
+    }
+
+    private static final class Frame {
+        private final int kind;
+        private final Map<String, Object> map;
+        private final List<Object> list;
+        private final String[] columns;
+        private int remaining;
+
+        Frame(int kind, Map<String, Object> map, List<Object> list, String[] columns, int remaining) {
+            this.kind = kind;
+            this.map = map;
+            this.list = list;
+            this.columns = columns;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.freakynit.toon;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class ToonConfig {
     private String delimiter;
     private int indent;
     private String lengthMarker;
+    private ToonFragmentCache fragmentCache;
+    private ToonMetricsListener metricsListener = ToonMetricsListener.NOOP;
+    private boolean typedHeaders;
+    private ToonLimits limits = new ToonLimits();
+    private boolean strict;
+    private final Map<String, ToonSchema> schemas = new LinkedHashMap<>();
 
     public ToonConfig() {
         this.delimiter = ",";
@@ -41,6 +51,62 @@ public class ToonConfig {
         this.lengthMarker = lengthMarker != null ? lengthMarker : "";
     }
 
+    public ToonFragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    public void setFragmentCache(ToonFragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    public ToonMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public void setMetricsListener(ToonMetricsListener metricsListener) {
+        this.metricsListener = metricsListener != null ? metricsListener : ToonMetricsListener.NOOP;
+    }
+
+    public boolean isTypedHeaders() {
+        return typedHeaders;
+    }
+
+    public void setTypedHeaders(boolean typedHeaders) {
+        this.typedHeaders = typedHeaders;
+    }
+
+    public ToonLimits getLimits() {
+        return limits;
+    }
+
+    public void setLimits(ToonLimits limits) {
+        this.limits = limits != null ? limits : new ToonLimits();
+    }
+
+    public boolean isStrict() {
+        return strict;
+    }
+
+    public void setStrict(boolean strict) {
+        this.strict = strict;
+    }
+
+    public void registerSchema(String key, ToonSchema schema) {
+        if (schema == null) {
+            schemas.remove(key);
+        } else {
+            schemas.put(key, schema);
+        }
+    }
+
+    public ToonSchema getSchema(String key) {
+        return schemas.isEmpty() ? null : schemas.get(key);
+    }
+
+    public Map<String, ToonSchema> getSchemas() {
+        return Collections.unmodifiableMap(schemas);
+    }
+
     public String getDelimiterDisplay() {
         if (",".equals(delimiter)) {
             return "";
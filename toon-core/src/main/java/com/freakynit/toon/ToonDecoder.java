@@ -1,12 +1,19 @@
 package com.freakynit.toon;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ToonDecoder {
-    private static final Pattern ARRAY_HEADER = Pattern.compile("^\\[(#?\\d+)([^\\]]*)?\\](.*)$");
-    private static final Pattern TABULAR_HEADER = Pattern.compile("^\\[(#?\\d+)([^\\]]*)?\\]\\{([^}]+)\\}:$");
+    // DOTALL because names and values may hold any character, U+0085 included. The field list of a tabular
+    // header is checked by isFieldList; as a regex alternation it recursed once per character.
+    private static final Pattern ARRAY_HEADER = Pattern.compile("^\\[(#?\\d+)([^\\]]*)?\\](.*)$", Pattern.DOTALL);
+    private static final Pattern TABULAR_HEADER = Pattern.compile("^\\[(#?\\d+)([^\\]]*)?\\]\\{(.+)\\}:$", Pattern.DOTALL);
 
     private final ToonConfig config;
 
@@ -23,134 +30,366 @@ public class ToonDecoder {
             return Collections.emptyMap();
         }
 
-        String[] lines = toon.split("\n");
-        ParseContext ctx = new ParseContext(lines, config);
+        TreeBuilder builder = new TreeBuilder();
+        decode(toon, builder);
+        return builder.result();
+    }
+
+    public void decode(String toon, ToonHandler handler) {
+        if (toon == null || toon.trim().isEmpty()) {
+            handler.startObject();
+            handler.endObject();
+            return;
+        }
 
-        if (lines[0].trim().startsWith("[")) {
-            return parseRootArray(ctx);
+        ToonLimits limits = config.getLimits();
+        if (toon.length() > limits.getMaxDocumentLength()) {
+            throw new ToonException("Document exceeds " + limits.getMaxDocumentLength() + " chars", 1, 1);
         }
 
-        return parseObject(ctx, 0);
+        ToonMetricsListener listener = config.getMetricsListener();
+        if (listener == ToonMetricsListener.NOOP) {
+            parse(new ParseContext(splitLines(toon), limits, null), handler);
+            return;
+        }
+
+        ToonMetrics callMetrics = new ToonMetrics();
+        long start = System.nanoTime();
+        String[] lines = splitLines(toon);
+        long split = System.nanoTime();
+        parse(new ParseContext(lines, limits, callMetrics), handler);
+        callMetrics.splitNanos = split - start;
+        callMetrics.parseNanos = System.nanoTime() - split;
+        callMetrics.inputBytes = ToonMetrics.utf8Length(toon);
+        listener.onDecode(callMetrics);
     }
 
-    private Object parseRootArray(ParseContext ctx) {
-        String line = ctx.currentLine().trim();
+    public Object decode(Reader reader) {
+        TreeBuilder builder = new TreeBuilder();
+        decode(reader, builder);
+        return builder.result();
+    }
 
-        Matcher tabularMatcher = TABULAR_HEADER.matcher(line);
-        if (tabularMatcher.matches()) {
-            return parseTabularArray(ctx, 0);
+    public void decode(Reader reader, ToonHandler handler) {
+        ToonMetricsListener listener = config.getMetricsListener();
+        if (listener == ToonMetricsListener.NOOP) {
+            parse(new ParseContext(reader, config.getLimits(), null), handler);
+            return;
         }
 
-        Matcher arrayMatcher = ARRAY_HEADER.matcher(line);
-        if (arrayMatcher.matches()) {
-            String rest = arrayMatcher.group(3);
-            if (rest.startsWith(": ")) {
-                return parseInlineArray(line);
-            } else if (rest.equals(":")) {
-                ctx.advance();
-                return parseListArray(ctx, 0);
+        // The reader fills in inputBytes as it goes
+        ToonMetrics callMetrics = new ToonMetrics();
+        long start = System.nanoTime();
+        parse(new ParseContext(reader, config.getLimits(), callMetrics), handler);
+        callMetrics.parseNanos = System.nanoTime() - start;
+        listener.onDecode(callMetrics);
+    }
+
+    // Same line terminators as the Reader path: \n, \r\n and a lone \r
+    private static String[] splitLines(String toon) {
+        if (toon.indexOf('\r') == -1) {
+            return toon.split("\n");
+        }
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int length = toon.length();
+        for (int i = 0; i < length; i++) {
+            char c = toon.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(toon.substring(start, i));
+                if (c == '\r' && i + 1 < length && toon.charAt(i + 1) == '\n') i++;
+                start = i + 1;
             }
         }
-
-        return Collections.emptyList();
+        if (start < length) lines.add(toon.substring(start));
+        return lines.toArray(new String[0]);
     }
 
-    private Map<String, Object> parseObject(ParseContext ctx, int baseIndent) {
-        Map<String, Object> result = new LinkedHashMap<>();
+    // Open objects and list arrays live on an explicit stack, so nesting depth costs heap, not call stack
+    private void parse(ParseContext ctx, ToonHandler handler) {
+        Frames frames = new Frames();
+        if (ctx.hasMore() && ctx.currentLine().trim().startsWith("[")) {
+            // Root arrays put their rows and items at column 0, so any indent belongs to them
+            parseArrayValue(ctx, ctx.currentLine().trim(), -1, null, frames, handler);
+        } else {
+            openObject(ctx, 0, frames, handler);
+        }
+
+        while (!frames.isEmpty()) {
+            if (!ctx.hasMore()) {
+                close(ctx, frames, handler);
+                continue;
+            }
 
-        while (ctx.hasMore()) {
             String line = ctx.currentLine();
             int indent = getIndent(line);
+            int baseIndent = frames.baseIndent();
 
-            if (indent < baseIndent) break;
-            if (indent > baseIndent) {
-                ctx.advance();
-                continue;
+            if (frames.isList()) {
+                if (indent <= baseIndent) {
+                    close(ctx, frames, handler);
+                    continue;
+                }
+                String trimmed = line.trim();
+                if (!isListItem(trimmed)) {
+                    close(ctx, frames, handler);
+                    continue;
+                }
+                if (frames.nextItem() > config.getLimits().getMaxArrayLength()) {
+                    throw ctx.error("Array exceeds " + config.getLimits().getMaxArrayLength() + " items", indent + 1);
+                }
+                parseListItem(ctx, trimmed, indent, frames, handler);
+            } else {
+                if (indent < baseIndent) {
+                    close(ctx, frames, handler);
+                    continue;
+                }
+                if (indent > baseIndent) {
+                    ctx.advance();
+                    continue;
+                }
+                String trimmed = line.trim();
+                if (isListItem(trimmed)) {
+                    close(ctx, frames, handler);
+                    continue;
+                }
+                if (!parseEntry(ctx, trimmed, indent, frames, handler)) {
+                    ctx.advance();
+                }
             }
+        }
+    }
 
-            String trimmed = line.trim();
-            if (trimmed.startsWith("- ")) break;
+    private void openObject(ParseContext ctx, int baseIndent, Frames frames, ToonHandler handler) {
+        checkDepth(ctx, frames.size() + 1);
+        if (ctx.metrics != null) ctx.metrics.depth(baseIndent / config.getIndent());
+        handler.startObject();
+        frames.push(false, baseIndent, -1, ctx.lineNumber);
+    }
 
-            int colonIdx = findUnquotedColon(trimmed);
-            if (colonIdx == -1) {
-                ctx.advance();
-                continue;
+    private void openList(ParseContext ctx, int baseIndent, int declared, int headerLine, Frames frames, ToonHandler handler) {
+        checkDepth(ctx, frames.size() + 1);
+        if (ctx.metrics != null) {
+            ctx.metrics.listArrays++;
+            ctx.metrics.depth(baseIndent / config.getIndent() + 1);
+        }
+        handler.startArray(declared);
+        frames.push(true, baseIndent, declared, headerLine);
+    }
+
+    private void close(ParseContext ctx, Frames frames, ToonHandler handler) {
+        if (frames.isList()) {
+            if (config.isStrict() && frames.items() != frames.declared()) {
+                throw new ToonException("Array declares " + frames.declared() + " items but holds " + frames.items(),
+                        frames.line(), Math.max(frames.baseIndent(), 0) + 1);
             }
+            frames.pop();
+            handler.endArray();
+        } else {
+            frames.pop();
+            handler.endObject();
+        }
+    }
 
-            String key = unquoteString(trimmed.substring(0, colonIdx).trim());
-            String valueStr = trimmed.substring(colonIdx + 1).trim();
+    private void checkDepth(ParseContext ctx, int depth) {
+        int maxDepth = config.getLimits().getMaxDepth();
+        if (depth > maxDepth) {
+            throw ctx.error("Nesting exceeds depth " + maxDepth, ctx.hasMore() ? getIndent(ctx.currentLine()) + 1 : 1);
+        }
+    }
 
-            if (valueStr.isEmpty()) {
-                ctx.advance();
-                if (ctx.hasMore() && getIndent(ctx.currentLine()) > indent) {
-                    result.put(key, parseObject(ctx, indent + config.getIndent()));
-                } else {
-                    result.put(key, Collections.emptyMap());
-                }
-            } else if (valueStr.startsWith("[")) {
-                Object arrayValue = parseArrayValue(ctx, valueStr, indent);
-                result.put(key, arrayValue);
-                ctx.advance();
+    private boolean parseEntry(ParseContext ctx, String entry, int indent, Frames frames, ToonHandler handler) {
+        int colonIdx = findUnquotedColon(entry);
+        if (colonIdx == -1) {
+            return false;
+        }
+
+        String key = unquoteString(ctx, entry.substring(0, colonIdx));
+        handler.key(key);
+        String valueStr = entry.substring(colonIdx + 1).trim();
+
+        if (valueStr.isEmpty()) {
+            ctx.advance();
+            if (ctx.hasMore() && getIndent(ctx.currentLine()) > indent) {
+                openObject(ctx, indent + config.getIndent(), frames, handler);
             } else {
-                result.put(key, parseScalar(valueStr));
-                ctx.advance();
+                handler.startObject();
+                handler.endObject();
             }
+        } else if (valueStr.startsWith("[")) {
+            parseArrayValue(ctx, valueStr, indent, key, frames, handler);
+        } else {
+            handler.value(parseScalar(ctx, valueStr));
+            ctx.advance();
         }
+        return true;
+    }
+
+    private void parseListItem(ParseContext ctx, String trimmed, int indent, Frames frames, ToonHandler handler) {
+        String content = trimmed.substring(1).trim();
 
-        return result;
+        if (content.isEmpty()) {
+            handler.startObject();
+            handler.endObject();
+            ctx.advance();
+        } else if (content.startsWith("[")) {
+            parseArrayValue(ctx, content, indent, null, frames, handler);
+        } else if (findUnquotedColon(content) != -1) {
+            // The first entry shares the "- " line; the rest sit one indent step deeper
+            int entryIndent = indent + config.getIndent();
+            checkDepth(ctx, frames.size() + 1);
+            handler.startObject();
+            frames.push(false, entryIndent, -1, ctx.lineNumber);
+            parseEntry(ctx, content, entryIndent, frames, handler);
+        } else {
+            handler.value(parseScalar(ctx, content));
+            ctx.advance();
+        }
     }
 
-    private Object parseArrayValue(ParseContext ctx, String header, int baseIndent) {
+    private void parseArrayValue(ParseContext ctx, String header, int baseIndent, String key, Frames frames, ToonHandler handler) {
         Matcher tabularMatcher = TABULAR_HEADER.matcher(header);
-        if (tabularMatcher.matches()) {
-            return parseTabularArray(ctx, baseIndent);
+        if (tabularMatcher.matches() && isFieldList(header, tabularMatcher.start(3), tabularMatcher.end(3))) {
+            checkDepth(ctx, frames.size() + 1);
+            parseTabularArray(ctx, tabularMatcher, baseIndent, key, handler);
+            return;
         }
 
         Matcher arrayMatcher = ARRAY_HEADER.matcher(header);
         if (arrayMatcher.matches()) {
             String rest = arrayMatcher.group(3);
+            int declared = declaredLength(ctx, arrayMatcher);
             if (rest.startsWith(": ")) {
-                return parseInlineArray(header);
+                checkDepth(ctx, frames.size() + 1);
+                parseInlineArray(ctx, header, arrayMatcher.start(3) + 2,
+                        headerDelimiter(arrayMatcher.group(2)), declared, handler);
+                ctx.advance();
+                return;
             } else if (rest.equals(":")) {
+                int headerLine = ctx.lineNumber;
                 ctx.advance();
-                return parseListArray(ctx, baseIndent);
+                openList(ctx, baseIndent, declared, headerLine, frames, handler);
+                return;
             }
         }
 
-        return Collections.emptyList();
+        ctx.advance();
+        handler.startArray(0);
+        handler.endArray();
     }
 
-    private List<Object> parseInlineArray(String line) {
-        int colonIdx = line.indexOf("]: ");
-        if (colonIdx == -1) return Collections.emptyList();
+    // No bare '}' and every quoted field closed, with backslash escapes inside quotes
+    private static boolean isFieldList(String s, int start, int end) {
+        int i = start;
+        while (i < end) {
+            char c = s.charAt(i++);
+            if (c == '}') return false;
+            if (c == '"') {
+                while (i < end && s.charAt(i) != '"') {
+                    i += s.charAt(i) == '\\' ? 2 : 1;
+                }
+                if (i >= end) return false;
+                i++;
+            }
+        }
+        return true;
+    }
 
-        String content = line.substring(colonIdx + 3);
-        if (content.isEmpty()) return Collections.emptyList();
+    // The header is checked before anything is sized from it, so "[999999999]" fails here rather than in an allocation
+    private int declaredLength(ParseContext ctx, Matcher header) {
+        String marker = header.group(1);
+        int start = marker.startsWith("#") ? 1 : 0;
+        long length = 0;
+        for (int i = start; i < marker.length() && length <= Integer.MAX_VALUE; i++) {
+            length = length * 10 + (marker.charAt(i) - '0');
+        }
+        int maxArrayLength = config.getLimits().getMaxArrayLength();
+        if (length > maxArrayLength) {
+            throw ctx.error("Array declares " + marker.substring(start) + " items, limit is " + maxArrayLength,
+                    header.group(0), header.start(1));
+        }
+        return (int) length;
+    }
 
-        List<Object> result = new ArrayList<>();
-        List<String> items = splitDelimited(content, config.getDelimiter());
+    private String headerDelimiter(String declared) {
+        if (declared == null || declared.isEmpty()) {
+            return ",";
+        }
+        return declared;
+    }
 
-        for (String item : items) {
-            result.add(parseScalar(item.trim()));
+    private void parseInlineArray(ParseContext ctx, String line, int contentStart, String delimiter,
+                                  int declared, ToonHandler handler) {
+        int count = 0;
+        ToonSplitter splitter = ctx.splitter;
+        if (contentStart < line.length()) {
+            count = splitter.split(line, contentStart, line.length(), delimiter);
+            if (count > config.getLimits().getMaxArrayLength()) {
+                throw ctx.error("Array exceeds " + config.getLimits().getMaxArrayLength() + " items", line, contentStart);
+            }
+        }
+        if (config.isStrict() && count != declared) {
+            throw ctx.error("Array declares " + declared + " items but holds " + count, line, 0);
         }
 
-        return result;
+        handler.startArray(declared);
+        if (count > 0) {
+            if (ctx.metrics != null) ctx.metrics.inlineArrays++;
+            for (int i = 0; i < count; i++) {
+                handler.value(parseScalar(ctx, line, splitter.start(i), splitter.end(i)));
+            }
+        }
+        handler.endArray();
     }
 
-    private List<Map<String, Object>> parseTabularArray(ParseContext ctx, int baseIndent) {
-        String header = ctx.currentLine().trim();
-        Matcher matcher = TABULAR_HEADER.matcher(header);
-        if (!matcher.matches()) return Collections.emptyList();
-
-        String headersStr = matcher.group(3);
-        List<String> headers = splitDelimited(headersStr, config.getDelimiter());
-        for (int i = 0; i < headers.size(); i++) {
-            headers.set(i, unquoteString(headers.get(i).trim()));
+    private void parseTabularArray(ParseContext ctx, Matcher header, int baseIndent, String key, ToonHandler handler) {
+        String delimiter = headerDelimiter(header.group(2));
+        ToonSplitter splitter = ctx.splitter;
+        int declared = declaredLength(ctx, header);
+
+        String headerLine = header.group(0);
+        int fieldCount = splitter.split(headerLine, header.start(3), header.end(3), delimiter);
+        String[] fields = new String[fieldCount];
+        ToonSchema.Type[] types = null;
+        for (int i = 0; i < fieldCount; i++) {
+            // A typed field is name:type; untyped encoders always quote names containing a colon
+            String field = splitter.text(headerLine, i);
+            int colon = findUnquotedColon(field);
+            if (colon == -1) {
+                fields[i] = unquoteString(ctx, field);
+            } else {
+                fields[i] = unquoteString(ctx, field.substring(0, colon));
+                if (types == null) types = new ToonSchema.Type[fieldCount];
+                try {
+                    types[i] = ToonSchema.Type.fromHint(field.substring(colon + 1).trim());
+                } catch (IllegalArgumentException e) {
+                    throw ctx.error(e.getMessage(), headerLine, splitter.start(i) + colon + 1);
+                }
+            }
+        }
+        List<ToonSchema.Type> declaredTypes = null;
+        if (types != null) {
+            declaredTypes = new ArrayList<>(fieldCount);
+            for (ToonSchema.Type type : types) {
+                declaredTypes.add(type == null ? ToonSchema.Type.ANY : type);
+            }
+        }
+        ToonSchema schema = types == null && key != null ? config.getSchema(key) : null;
+        if (schema != null) {
+            types = new ToonSchema.Type[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                types[i] = schema.getType(fields[i]);
+            }
         }
 
-        List<Map<String, Object>> result = new ArrayList<>();
+        if (ctx.metrics != null) ctx.metrics.tabularArrays++;
+        handler.startTabularArray(declared, Collections.unmodifiableList(Arrays.asList(fields)), declaredTypes);
+        int headerLineNumber = ctx.lineNumber;
         ctx.advance();
 
+        boolean strict = config.isStrict();
+        int maxRows = config.getLimits().getMaxArrayLength();
+        int rows = 0;
         while (ctx.hasMore()) {
             String line = ctx.currentLine();
             int indent = getIndent(line);
@@ -158,76 +397,145 @@ public class ToonDecoder {
             if (indent <= baseIndent) break;
 
             String trimmed = line.trim();
-            if (trimmed.startsWith("- ")) break;
+            if (trimmed.isEmpty() || isListItem(trimmed)) break;
 
-            List<String> values = splitDelimited(trimmed, config.getDelimiter());
-            Map<String, Object> row = new LinkedHashMap<>();
+            if (++rows > maxRows) {
+                throw ctx.error("Array exceeds " + maxRows + " rows", indent + 1);
+            }
 
-            for (int i = 0; i < headers.size() && i < values.size(); i++) {
-                row.put(headers.get(i), parseScalar(values.get(i).trim()));
+            int count = splitter.split(trimmed, 0, trimmed.length(), delimiter);
+            if (strict && count != fieldCount) {
+                throw ctx.error("Row has " + count + " values but the header declares " + fieldCount + " fields", indent + 1);
             }
+            handler.startObject();
+            for (int i = 0; i < fieldCount && i < count; i++) {
+                handler.key(fields[i]);
+                ToonSchema.Type type = types == null ? null : types[i];
+                if (type == null || type == ToonSchema.Type.ANY) {
+                    handler.value(parseScalar(ctx, trimmed, splitter.start(i), splitter.end(i)));
+                } else {
+                    parseTypedCell(ctx, type, fields[i], trimmed, splitter.start(i), splitter.end(i), handler);
+                }
+            }
+            handler.endObject();
 
-            result.add(row);
+            if (ctx.metrics != null) ctx.metrics.rows++;
             ctx.advance();
         }
 
-        return result;
+        if (strict && rows != declared) {
+            throw new ToonException("Array declares " + declared + " rows but holds " + rows, headerLineNumber, Math.max(baseIndent, 0) + 1);
+        }
+        handler.endArray();
     }
 
-    private List<Object> parseListArray(ParseContext ctx, int baseIndent) {
-        List<Object> result = new ArrayList<>();
-
-        while (ctx.hasMore()) {
-            String line = ctx.currentLine();
-            int indent = getIndent(line);
-
-            if (indent <= baseIndent) break;
-
-            String trimmed = line.trim();
-            if (!trimmed.startsWith("- ")) break;
+    // Column types are known up front, so each cell goes to one parser instead of through scalar inference
+    private void parseTypedCell(ParseContext ctx, ToonSchema.Type type, String column, String s, int start, int end,
+                                ToonHandler handler) {
+        int length = end - start;
+        if (length == 4 && s.startsWith("null", start)) {
+            handler.value(null);
+            return;
+        }
+        switch (type) {
+            case INT: {
+                Number number = ToonNumbers.parse(s, start, end);
+                if (number instanceof Long) {
+                    handler.longValue(number.longValue());
+                } else if (number instanceof BigInteger) {
+                    handler.value(number);
+                } else {
+                    throw cellMismatch(ctx, type, column, s, start, end);
+                }
+                return;
+            }
+            case FLOAT: {
+                Number number = ToonNumbers.parse(s, start, end);
+                if (number == null) {
+                    throw cellMismatch(ctx, type, column, s, start, end);
+                }
+                // Past the double range the cell keeps its exact value rather than becoming infinity or zero
+                double d = number.doubleValue();
+                if (number instanceof BigDecimal || Double.isInfinite(d)) {
+                    handler.value(number);
+                } else {
+                    handler.doubleValue(d);
+                }
+                return;
+            }
+            case BOOL:
+                if (length == 4 && s.startsWith("true", start)) {
+                    handler.booleanValue(true);
+                } else if (length == 5 && s.startsWith("false", start)) {
+                    handler.booleanValue(false);
+                } else {
+                    throw cellMismatch(ctx, type, column, s, start, end);
+                }
+                return;
+            default:
+                checkStringLength(ctx, s, start, end);
+                if (ctx.metrics != null) ctx.metrics.strings++;
+                if (length >= 2 && s.charAt(start) == '"' && s.charAt(end - 1) == '"') {
+                    if (ctx.metrics != null) ctx.metrics.quotedStrings++;
+                    handler.value(unescapeString(s, start + 1, end - 1));
+                } else {
+                    handler.value(s.substring(start, end));
+                }
+        }
+    }
 
-            String content = trimmed.substring(2).trim();
+    private ToonException cellMismatch(ParseContext ctx, ToonSchema.Type type, String column, String s, int start, int end) {
+        String cell = end - start > 64 ? s.substring(start, start + 64) + "..." : s.substring(start, end);
+        return ctx.error("Column '" + column + "' is declared " + type.hint() + " but holds '" + cell + "'", s, start);
+    }
 
-            if (content.startsWith("[")) {
-                Object item = parseArrayValue(ctx, content, indent);
-                result.add(item);
-                ctx.advance();
-            } else if (content.contains(":")) {
-                ctx.advance();
-                result.add(parseObject(ctx, indent + config.getIndent()));
-            } else {
-                result.add(parseScalar(content));
-                ctx.advance();
-            }
+    private void checkStringLength(ParseContext ctx, String s, int start, int end) {
+        int maxStringLength = config.getLimits().getMaxStringLength();
+        if (end - start > maxStringLength) {
+            throw ctx.error("String exceeds " + maxStringLength + " chars", s, start);
         }
+    }
 
-        return result;
+    private boolean isListItem(String trimmed) {
+        return trimmed.startsWith("- ") || trimmed.equals("-");
     }
 
-    private Object parseScalar(String value) {
+    private Object parseScalar(ParseContext ctx, String value) {
         value = value.trim();
+        return parseScalar(ctx, value, 0, value.length());
+    }
 
-        if (value.equals("null")) return null;
-        if (value.equals("true")) return true;
-        if (value.equals("false")) return false;
-
-        if (value.startsWith("\"") && value.endsWith("\"")) {
-            return unescapeString(value.substring(1, value.length() - 1));
+    private Object parseScalar(ParseContext ctx, String s, int start, int end) {
+        int length = end - start;
+        if (length == 4) {
+            if (s.startsWith("null", start)) return null;
+            if (s.startsWith("true", start)) return true;
+        } else if (length == 5 && s.startsWith("false", start)) {
+            return false;
         }
 
-        try {
-            if (value.contains(".")) {
-                return Double.parseDouble(value);
-            } else {
-                return Long.parseLong(value);
+        if (length >= 2 && s.charAt(start) == '"' && s.charAt(end - 1) == '"') {
+            checkStringLength(ctx, s, start + 1, end - 1);
+            if (ctx.metrics != null) {
+                ctx.metrics.strings++;
+                ctx.metrics.quotedStrings++;
             }
-        } catch (NumberFormatException e) {
-            return value;
+            return unescapeString(s, start + 1, end - 1);
+        }
+
+        char first = length > 0 ? s.charAt(start) : ' ';
+        if ((first >= '0' && first <= '9') || first == '-') {
+            Number number = ToonNumbers.parse(s, start, end);
+            if (number != null) return number;
         }
+        checkStringLength(ctx, s, start, end);
+        if (ctx.metrics != null) ctx.metrics.strings++;
+        return s.substring(start, end);
     }
 
-    private String unquoteString(String s) {
+    private String unquoteString(ParseContext ctx, String s) {
         s = s.trim();
+        checkStringLength(ctx, s, 0, s.length());
         if (s.startsWith("\"") && s.endsWith("\"")) {
             return unescapeString(s.substring(1, s.length() - 1));
         }
@@ -235,10 +543,21 @@ public class ToonDecoder {
     }
 
     private String unescapeString(String s) {
-        StringBuilder result = new StringBuilder();
+        return unescapeString(s, 0, s.length());
+    }
+
+    private String unescapeString(String s, int start, int end) {
+        int backslash = s.indexOf('\\', start);
+        if (backslash == -1 || backslash >= end) {
+            return s.substring(start, end);
+        }
+
+        StringBuilder result = new StringBuilder(end - start);
+        result.append(s, start, backslash);
         boolean escaped = false;
 
-        for (char c : s.toCharArray()) {
+        for (int i = backslash; i < end; i++) {
+            char c = s.charAt(i);
             if (escaped) {
                 switch (c) {
                     case 'n': result.append('\n'); break;
@@ -259,37 +578,6 @@ public class ToonDecoder {
         return result.toString();
     }
 
-    private List<String> splitDelimited(String s, String delimiter) {
-        List<String> result = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuotes = false;
-        boolean escaped = false;
-
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-
-            if (escaped) {
-                current.append(c);
-                escaped = false;
-            } else if (c == '\\') {
-                current.append(c);
-                escaped = true;
-            } else if (c == '"') {
-                current.append(c);
-                inQuotes = !inQuotes;
-            } else if (!inQuotes && s.startsWith(delimiter, i)) {
-                result.add(current.toString());
-                current = new StringBuilder();
-                i += delimiter.length() - 1;
-            } else {
-                current.append(c);
-            }
-        }
-
-        result.add(current.toString());
-        return result;
-    }
-
     private int findUnquotedColon(String s) {
         boolean inQuotes = false;
         boolean escaped = false;
@@ -299,7 +587,8 @@ public class ToonDecoder {
 
             if (escaped) {
                 escaped = false;
-            } else if (c == '\\') {
+            } else if (inQuotes && c == '\\') {
+                // Backslashes only escape inside quotes, as in ToonSplitter
                 escaped = true;
             } else if (c == '"') {
                 inQuotes = !inQuotes;
@@ -313,34 +602,291 @@ public class ToonDecoder {
 
     private int getIndent(String line) {
         int count = 0;
-        for (char c : line.toCharArray()) {
-            if (c == ' ') count++;
-            else break;
+        int length = line.length();
+        while (count < length && line.charAt(count) == ' ') {
+            count++;
         }
         return count;
     }
 
+    private static final class Frames {
+        private boolean[] lists = new boolean[16];
+        private int[] indents = new int[16];
+        private int[] items = new int[16];
+        private int[] declared = new int[16];
+        private int[] lines = new int[16];
+        private int size;
+
+        void push(boolean list, int baseIndent, int declaredLength, int line) {
+            if (size == indents.length) {
+                lists = Arrays.copyOf(lists, size * 2);
+                indents = Arrays.copyOf(indents, size * 2);
+                items = Arrays.copyOf(items, size * 2);
+                declared = Arrays.copyOf(declared, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            lists[size] = list;
+            indents[size] = baseIndent;
+            items[size] = 0;
+            declared[size] = declaredLength;
+            lines[size] = line;
+            size++;
+        }
+
+        void pop() {
+            size--;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isList() {
+            return lists[size - 1];
+        }
+
+        int baseIndent() {
+            return indents[size - 1];
+        }
+
+        int nextItem() {
+            return ++items[size - 1];
+        }
+
+        int items() {
+            return items[size - 1];
+        }
+
+        int declared() {
+            return declared[size - 1];
+        }
+
+        int line() {
+            return lines[size - 1];
+        }
+    }
+
     private static class ParseContext {
         private final String[] lines;
-        private final ToonConfig config;
+        private final Reader reader;
+        private final ToonLimits limits;
+        private final ToonSplitter splitter = new ToonSplitter();
+        // Counts for this call when a listener is set, so concurrent calls on one decoder never share them
+        private final ToonMetrics metrics;
+        private char[] buffer;
+        private int position;
+        private int limit;
+        private boolean skipNewline;
+        private String current;
         private int index;
+        private int lineNumber = 1;
+        private long charsRead;
 
-        public ParseContext(String[] lines, ToonConfig config) {
+        ParseContext(String[] lines, ToonLimits limits, ToonMetrics metrics) {
             this.lines = lines;
-            this.config = config;
-            this.index = 0;
+            this.reader = null;
+            this.limits = limits;
+            this.metrics = metrics;
+            this.current = lines.length > 0 ? checkLine(lines[0]) : null;
+        }
+
+        ParseContext(Reader reader, ToonLimits limits, ToonMetrics metrics) {
+            this.lines = null;
+            this.reader = reader;
+            this.limits = limits;
+            this.metrics = metrics;
+            this.buffer = new char[8192];
+            this.current = readLine();
+        }
+
+        boolean hasMore() {
+            return current != null;
+        }
+
+        String currentLine() {
+            return current;
+        }
+
+        void advance() {
+            lineNumber++;
+            if (lines != null) {
+                index++;
+                current = index < lines.length ? checkLine(lines[index]) : null;
+            } else {
+                current = readLine();
+            }
+        }
+
+        ToonException error(String message, int column) {
+            return new ToonException(message, lineNumber, column);
+        }
+
+        // Text handed around the parser is a trimmed slice of the current line, so it can be found again for the column
+        ToonException error(String message, String text, int offset) {
+            int at = current == null ? -1 : current.indexOf(text);
+            return error(message, Math.max(at, 0) + offset + 1);
+        }
+
+        private String checkLine(String line) {
+            if (line.length() > limits.getMaxLineLength()) {
+                throw error("Line exceeds " + limits.getMaxLineLength() + " chars", limits.getMaxLineLength() + 1);
+            }
+            return line;
         }
 
-        public boolean hasMore() {
-            return index < lines.length;
+        // Same line terminators as BufferedReader.readLine, but a line is rejected as soon as it
+        // passes the length limit instead of after it has been buffered whole
+        private String readLine() {
+            StringBuilder partial = null;
+            while (true) {
+                if (position >= limit && !fill()) {
+                    if (partial == null) return null;
+                    count(partial.length());
+                    return partial.toString();
+                }
+                if (skipNewline) {
+                    skipNewline = false;
+                    if (buffer[position] == '\n') {
+                        position++;
+                        continue;
+                    }
+                }
+
+                int start = position;
+                while (position < limit) {
+                    char c = buffer[position];
+                    if (c == '\n' || c == '\r') break;
+                    position++;
+                }
+                int length = (partial == null ? 0 : partial.length()) + position - start;
+                if (length > limits.getMaxLineLength()) {
+                    throw error("Line exceeds " + limits.getMaxLineLength() + " chars", limits.getMaxLineLength() + 1);
+                }
+
+                if (position < limit) {
+                    skipNewline = buffer[position] == '\r';
+                    String line;
+                    if (partial == null) {
+                        line = new String(buffer, start, position - start);
+                    } else {
+                        line = partial.append(buffer, start, position - start).toString();
+                    }
+                    position++;
+                    count(length + 1);
+                    return line;
+                }
+                if (position > start) {
+                    if (partial == null) partial = new StringBuilder(position - start);
+                    partial.append(buffer, start, position - start);
+                }
+            }
         }
 
-        public String currentLine() {
-            return lines[index];
+        private boolean fill() {
+            try {
+                int read = reader.read(buffer, 0, buffer.length);
+                if (read <= 0) return false;
+                if (metrics != null) metrics.inputBytes += ToonMetrics.utf8Length(buffer, 0, read);
+                position = 0;
+                limit = read;
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
-        public void advance() {
-            index++;
+        private void count(int chars) {
+            charsRead += chars;
+            if (charsRead > limits.getMaxDocumentLength()) {
+                throw error("Document exceeds " + limits.getMaxDocumentLength() + " chars", 1);
+            }
+        }
+    }
+
+    private static class TreeBuilder implements ToonHandler {
+        // Declared lengths come from the input, so presizing is capped per array and per document
+        private static final int PRESIZE_LIMIT = 1 << 16;
+        private static final int PRESIZE_BUDGET = 1 << 20;
+
+        private final List<Object> containers = new ArrayList<>();
+        private final List<String> parentKeys = new ArrayList<>();
+        private String key;
+        private Object result;
+        private int presizeBudget = PRESIZE_BUDGET;
+        private int rowCapacity;
+
+        @Override
+        public void startObject() {
+            // Inside a tabular array every object is a row with the header's fields
+            push(rowCapacity > 0 ? new LinkedHashMap<String, Object>(rowCapacity) : new LinkedHashMap<String, Object>());
+        }
+
+        @Override
+        public void key(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void endObject() {
+            pop();
+        }
+
+        @Override
+        public void startArray(int declaredLength) {
+            int capacity = Math.min(Math.min(declaredLength, PRESIZE_LIMIT), presizeBudget);
+            presizeBudget -= capacity;
+            push(capacity > 0 || declaredLength == 0 ? new ArrayList<>(capacity) : new ArrayList<>());
+        }
+
+        @Override
+        public void startTabularArray(int declaredLength, List<String> columns) {
+            startArray(declaredLength);
+            rowCapacity = (int) (columns.size() / 0.75f) + 1;
+        }
+
+        @Override
+        public void endArray() {
+            rowCapacity = 0;
+            pop();
+        }
+
+        @Override
+        public void value(Object value) {
+            add(value);
+        }
+
+        Object result() {
+            return result;
+        }
+
+        private void push(Object container) {
+            containers.add(container);
+            parentKeys.add(key);
+        }
+
+        private void pop() {
+            int last = containers.size() - 1;
+            Object container = containers.remove(last);
+            key = parentKeys.remove(last);
+            add(container);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Object value) {
+            if (containers.isEmpty()) {
+                result = value;
+                return;
+            }
+            Object top = containers.get(containers.size() - 1);
+            if (top instanceof Map) {
+                ((Map<String, Object>) top).put(key, value);
+            } else {
+                ((List<Object>) top).add(value);
+            }
         }
     }
 }
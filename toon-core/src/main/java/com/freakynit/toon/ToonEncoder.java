@@ -9,26 +9,50 @@ public class ToonEncoder {
     private static final Pattern SAFE_STRING_PATTERN = Pattern.compile("^[a-zA-Z0-9_]+$");
     private static final Pattern NUMERIC_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?$");
     private static final Pattern LEADING_ZERO_PATTERN = Pattern.compile("^0\\d+$");
-    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+    static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
             .withZone(ZoneOffset.UTC);
 
     private final ToonConfig config;
+    // Only set on the per-call encoder that collects one call's counts, so a shared encoder stays stateless
+    private final ToonMetrics metrics;
 
     public ToonEncoder() {
         this(new ToonConfig());
     }
 
     public ToonEncoder(ToonConfig config) {
+        this(config, null);
+    }
+
+    private ToonEncoder(ToonConfig config, ToonMetrics metrics) {
         this.config = config;
+        this.metrics = metrics;
     }
 
     public String encode(Object data) {
-        StringBuilder sb = new StringBuilder();
-        encodeValue(data, sb, 0, false);
-        return sb.toString();
+        return encode(data, new StringBuilder());
+    }
+
+    String encode(Object data, StringBuilder sb) {
+        sb.setLength(0);
+        ToonMetricsListener listener = config.getMetricsListener();
+        if (listener == ToonMetricsListener.NOOP) {
+            encodeValue(data, sb, 0, false);
+            return sb.toString();
+        }
+
+        ToonMetrics callMetrics = new ToonMetrics();
+        long start = System.nanoTime();
+        new ToonEncoder(config, callMetrics).encodeValue(data, sb, 0, false);
+        String result = sb.toString();
+        callMetrics.encodeNanos = System.nanoTime() - start;
+        callMetrics.outputBytes = ToonMetrics.utf8Length(result);
+        listener.onEncode(callMetrics);
+        return result;
     }
 
     private void encodeValue(Object value, StringBuilder sb, int depth, boolean isListItem) {
+        if (metrics != null) metrics.depth(depth);
         if (value == null) {
             sb.append("null");
         } else if (value instanceof Boolean) {
@@ -40,33 +64,75 @@ public class ToonEncoder {
         } else if (value instanceof Date) {
             encodeDate((Date) value, sb);
         } else if (value instanceof Map) {
-            encodeMap((Map<?, ?>) value, sb, depth, isListItem);
+            if (!encodeCachedFragment(value, null, sb, depth, isListItem)) {
+                encodeMap((Map<?, ?>) value, sb, depth, isListItem);
+            }
         } else if (value instanceof List) {
-            encodeList((List<?>) value, sb, depth, isListItem);
+            if (!encodeCachedFragment(value, null, sb, depth, isListItem)) {
+                encodeList((List<?>) value, sb, depth, isListItem);
+            }
         } else {
             sb.append("null");
         }
     }
 
-    private void encodeNumber(Number num, StringBuilder sb) {
-        if (num instanceof Double || num instanceof Float) {
-            double d = num.doubleValue();
-            if (Double.isInfinite(d) || Double.isNaN(d)) {
-                sb.append("null");
-                return;
-            }
-            if (d == (long) d) {
-                sb.append((long) d);
+    // key is set for a list written as a map value; its header then sits on the key line and the
+    // fragment holds the header plus body, with the key line at depth 0
+    private boolean encodeCachedFragment(Object value, String key, StringBuilder sb, int depth, boolean isListItem) {
+        ToonFragmentCache cache = config.getFragmentCache();
+        if (cache == null || !cache.isImmutable(value)) {
+            return false;
+        }
+
+        // A schema registered for the key changes how the list renders, so it is part of the context
+        String context = key == null ? "" : config.getSchema(key) == null ? "keyed" : "keyed\u0000" + key;
+        ToonFragmentCache.Fragment fragment = cache.get(value, config, context);
+        if (fragment == null) {
+            // Counted even without a listener so a later encode that has one sees the same totals
+            ToonMetrics counts = new ToonMetrics();
+            ToonEncoder fragmentEncoder = new ToonEncoder(config, counts);
+            StringBuilder fragmentSb = new StringBuilder();
+            if (key != null) {
+                fragmentEncoder.encodeKeyedList(key, (List<?>) value, fragmentSb, 0);
+            } else if (value instanceof Map) {
+                fragmentEncoder.encodeMap((Map<?, ?>) value, fragmentSb, 0, isListItem);
             } else {
-                sb.append(d);
+                fragmentEncoder.encodeList((List<?>) value, fragmentSb, 0, isListItem);
             }
-        } else {
-            sb.append(num.toString());
+            fragment = new ToonFragmentCache.Fragment(fragmentSb.toString(), counts);
+            cache.put(value, config, context, fragment);
+        }
+        if (metrics != null) metrics.add(fragment.counts, depth);
+
+        String text = fragment.text;
+        if (depth == 0) {
+            sb.append(text);
+            return true;
         }
+
+        String pad = indent(depth);
+        int start = 0;
+        int newline;
+        while ((newline = text.indexOf('\n', start)) != -1) {
+            sb.append(text, start, newline + 1).append(pad);
+            start = newline + 1;
+        }
+        sb.append(text, start, text.length());
+        return true;
+    }
+
+    void encodeScalar(Object value, StringBuilder sb) {
+        encodeValue(value, sb, 0, false);
+    }
+
+    private void encodeNumber(Number num, StringBuilder sb) {
+        ToonNumbers.append(num, sb);
     }
 
     private void encodeString(String str, StringBuilder sb, int depth) {
+        if (metrics != null) metrics.strings++;
         if (needsQuoting(str)) {
+            if (metrics != null) metrics.quotedStrings++;
             sb.append('"').append(escapeString(str)).append('"');
         } else {
             sb.append(str);
@@ -79,7 +145,8 @@ public class ToonEncoder {
         if ("true".equals(str) || "false".equals(str) || "null".equals(str)) return true;
         if (NUMERIC_PATTERN.matcher(str).matches() || LEADING_ZERO_PATTERN.matcher(str).matches()) return true;
         if (str.contains(config.getDelimiter()) || str.contains(":") || str.contains("[") ||
-                str.contains("]") || str.contains("{") || str.contains("}") || str.startsWith("-")) return true;
+                str.contains("]") || str.contains("{") || str.contains("}") || str.contains("\"") ||
+                str.startsWith("-")) return true;
         if (!SAFE_STRING_PATTERN.matcher(str).matches()) {
             for (char c : str.toCharArray()) {
                 if (Character.isISOControl(c)) return true;
@@ -138,26 +205,8 @@ public class ToonEncoder {
                 sb.append('\n').append(indent(depth + 1));
                 encodeValue(value, sb, depth + 1, false);
             } else if (value instanceof List) {
-                List<?> list = (List<?>) value;
-                if (list.isEmpty()) {
-                    sb.append('[').append(config.getLengthMarker()).append("0]:");
-                } else if (shouldUseTabularFormat(list)) {
-                    encodeTabularArray(key, list, sb, depth);
-                } else if (isHomogeneousPrimitives(list)) {
-                    encodeInlineArray(list, sb, depth);
-                } else {
-                    sb.append('[').append(config.getLengthMarker()).append(list.size())
-                            .append(config.getDelimiterDisplay()).append("]:");
-                    for (Object item : list) {
-                        sb.append('\n').append(indent(depth + 1));
-                        if (item instanceof List || item instanceof Map) {
-                            sb.append("- ");
-                            encodeValue(item, sb, depth + 2, true);
-                        } else {
-                            sb.append("- ");
-                            encodeValue(item, sb, depth + 1, false);
-                        }
-                    }
+                if (!encodeCachedFragment(value, key, sb, depth, false)) {
+                    encodeKeyedList(key, (List<?>) value, sb, depth);
                 }
             } else {
                 encodeValue(value, sb, depth, false);
@@ -165,7 +214,37 @@ public class ToonEncoder {
         }
     }
 
-    private void encodeKey(String key, StringBuilder sb) {
+    // Writes the array header right after "key: " and its body below it
+    private void encodeKeyedList(String key, List<?> list, StringBuilder sb, int depth) {
+        ToonSchema schema = config.getSchema(key);
+        ToonArrayShape shape = schema != null && schema.accepts(list) ? null : ToonArrayShape.of(list);
+        ToonArrayShape.Layout layout = shape == null ? null : shape.layout();
+        if (layout == null) {
+            encodeTabularRows(list, schema.getColumns(), schema.getTypes(), sb, depth + 1);
+        } else if (layout == ToonArrayShape.Layout.EMPTY) {
+            sb.append('[').append(config.getLengthMarker()).append("0]:");
+        } else if (layout == ToonArrayShape.Layout.TABULAR) {
+            encodeTabularRows(list, shape.headers(), shape.types(), sb, depth + 1);
+        } else if (layout == ToonArrayShape.Layout.INLINE) {
+            encodeInlineArray(list, sb, depth);
+        } else {
+            if (metrics != null) metrics.listArrays++;
+            sb.append('[').append(config.getLengthMarker()).append(list.size())
+                    .append(config.getDelimiterDisplay()).append("]:");
+            for (Object item : list) {
+                sb.append('\n').append(indent(depth + 1));
+                if (item instanceof List || item instanceof Map) {
+                    sb.append("- ");
+                    encodeValue(item, sb, depth + 2, true);
+                } else {
+                    sb.append("- ");
+                    encodeValue(item, sb, depth + 1, false);
+                }
+            }
+        }
+    }
+
+    void encodeKey(String key, StringBuilder sb) {
         if (keyNeedsQuoting(key)) {
             sb.append('"').append(escapeString(key)).append('"');
         } else {
@@ -178,8 +257,8 @@ public class ToonEncoder {
         if (key.trim().length() != key.length()) return true;
         if (key.startsWith("-")) return true;
         if (NUMERIC_PATTERN.matcher(key).matches()) return true;
-        if (key.contains(":") || key.contains("[") || key.contains("]") ||
-                key.contains("{") || key.contains("}") || key.contains(config.getDelimiter())) return true;
+        if (key.contains(":") || key.contains("[") || key.contains("]") || key.contains("{") ||
+                key.contains("}") || key.contains("\"") || key.contains(config.getDelimiter())) return true;
         for (char c : key.toCharArray()) {
             if (Character.isISOControl(c)) return true;
         }
@@ -192,11 +271,14 @@ public class ToonEncoder {
             return;
         }
 
-        if (shouldUseTabularFormat(list)) {
-            encodeTabularArrayRoot(list, sb, depth);
-        } else if (isHomogeneousPrimitives(list)) {
+        ToonArrayShape shape = ToonArrayShape.of(list);
+        ToonArrayShape.Layout layout = shape.layout();
+        if (layout == ToonArrayShape.Layout.TABULAR) {
+            encodeTabularRows(list, shape.headers(), shape.types(), sb, depth);
+        } else if (layout == ToonArrayShape.Layout.INLINE) {
             encodeInlineArrayRoot(list, sb);
         } else {
+            if (metrics != null) metrics.listArrays++;
             sb.append('[').append(config.getLengthMarker()).append(list.size())
                     .append(config.getDelimiterDisplay()).append("]:");
             for (Object item : list) {
@@ -212,143 +294,76 @@ public class ToonEncoder {
         }
     }
 
-    private boolean shouldUseTabularFormat(List<?> list) {
-        if (list.isEmpty()) return false;
-
-        Set<String> firstKeys = null;
-        for (Object item : list) {
-            if (!(item instanceof Map)) return false;
-            Map<?, ?> map = (Map<?, ?>) item;
-            if (map.isEmpty()) return false;
-
-            Set<String> keys = new LinkedHashSet<>();
-            for (Object key : map.keySet()) {
-                keys.add(key.toString());
-                Object value = map.get(key);
-                if (value instanceof Map || value instanceof List) {
-                    return false;
-                }
-            }
-
-            if (firstKeys == null) {
-                firstKeys = keys;
-            } else if (!firstKeys.equals(keys)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean isHomogeneousPrimitives(List<?> list) {
-        for (Object item : list) {
-            if (item instanceof Map || item instanceof List) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     private void encodeInlineArray(List<?> list, StringBuilder sb, int depth) {
+        if (metrics != null) metrics.inlineArrays++;
         sb.append('[').append(config.getLengthMarker()).append(list.size())
                 .append(config.getDelimiterDisplay()).append("]: ");
         boolean first = true;
         for (Object item : list) {
             if (!first) sb.append(config.getDelimiter());
             first = false;
-            if (item instanceof String && needsQuoting((String) item)) {
-                sb.append('"').append(escapeString((String) item)).append('"');
-            } else {
-                encodeValue(item, sb, depth, false);
-            }
+            encodeValue(item, sb, depth, false);
         }
     }
 
     private void encodeInlineArrayRoot(List<?> list, StringBuilder sb) {
+        if (metrics != null) metrics.inlineArrays++;
         sb.append('[').append(config.getLengthMarker()).append(list.size())
                 .append(config.getDelimiterDisplay()).append("]: ");
         boolean first = true;
         for (Object item : list) {
             if (!first) sb.append(config.getDelimiter());
             first = false;
-            if (item instanceof String && needsQuoting((String) item)) {
-                sb.append('"').append(escapeString((String) item)).append('"');
-            } else {
-                encodeValue(item, sb, 0, false);
-            }
+            encodeValue(item, sb, 0, false);
         }
     }
 
-    private void encodeTabularArray(String key, List<?> list, StringBuilder sb, int depth) {
-        Map<?, ?> firstMap = (Map<?, ?>) list.get(0);
-        List<String> headers = new ArrayList<>();
-        for (Object k : firstMap.keySet()) {
-            headers.add(k.toString());
+    private void encodeTabularRows(List<?> list, List<String> headers, List<ToonSchema.Type> types,
+                                   StringBuilder sb, int rowDepth) {
+        if (metrics != null) {
+            metrics.tabularArrays++;
+            metrics.rows += list.size();
+        }
+        encodeTabularHeader(headers, config.isTypedHeaders() ? types : null, list.size(), sb);
+        String pad = indent(rowDepth);
+        for (Object item : list) {
+            sb.append('\n').append(pad);
+            encodeTabularRow((Map<?, ?>) item, headers, sb, rowDepth);
         }
+    }
 
-        sb.append('[').append(config.getLengthMarker()).append(list.size())
+    void encodeTabularHeader(List<String> headers, long size, StringBuilder sb) {
+        encodeTabularHeader(headers, null, size, sb);
+    }
+
+    void encodeTabularHeader(List<String> headers, List<ToonSchema.Type> types, long size, StringBuilder sb) {
+        sb.append('[').append(config.getLengthMarker()).append(size)
                 .append(config.getDelimiterDisplay()).append("]{");
         for (int i = 0; i < headers.size(); i++) {
             if (i > 0) sb.append(config.getDelimiter());
-            String header = headers.get(i);
-            if (keyNeedsQuoting(header)) {
-                sb.append('"').append(escapeString(header)).append('"');
-            } else {
-                sb.append(header);
+            encodeKey(headers.get(i), sb);
+            if (types != null && types.get(i) != ToonSchema.Type.ANY) {
+                sb.append(':').append(types.get(i).hint());
             }
         }
         sb.append("}:");
-
-        for (Object item : list) {
-            sb.append('\n').append(indent(depth + 1));
-            Map<?, ?> map = (Map<?, ?>) item;
-            for (int i = 0; i < headers.size(); i++) {
-                if (i > 0) sb.append(config.getDelimiter());
-                Object value = map.get(headers.get(i));
-                if (value instanceof String && needsQuoting((String) value)) {
-                    sb.append('"').append(escapeString((String) value)).append('"');
-                } else {
-                    encodeValue(value, sb, depth + 1, false);
-                }
-            }
-        }
     }
 
-    private void encodeTabularArrayRoot(List<?> list, StringBuilder sb, int depth) {
-        Map<?, ?> firstMap = (Map<?, ?>) list.get(0);
-        List<String> headers = new ArrayList<>();
-        for (Object k : firstMap.keySet()) {
-            headers.add(k.toString());
-        }
-
-        sb.append('[').append(config.getLengthMarker()).append(list.size())
-                .append(config.getDelimiterDisplay()).append("]{");
+    void encodeTabularRow(Map<?, ?> row, List<String> headers, StringBuilder sb, int depth) {
         for (int i = 0; i < headers.size(); i++) {
             if (i > 0) sb.append(config.getDelimiter());
-            String header = headers.get(i);
-            if (keyNeedsQuoting(header)) {
-                sb.append('"').append(escapeString(header)).append('"');
-            } else {
-                sb.append(header);
-            }
+            encodeValue(row.get(headers.get(i)), sb, depth, false);
         }
-        sb.append("}:");
+    }
 
-        for (Object item : list) {
-            sb.append('\n').append(indent(depth));
-            Map<?, ?> map = (Map<?, ?>) item;
-            for (int i = 0; i < headers.size(); i++) {
-                if (i > 0) sb.append(config.getDelimiter());
-                Object value = map.get(headers.get(i));
-                if (value instanceof String && needsQuoting((String) value)) {
-                    sb.append('"').append(escapeString((String) value)).append('"');
-                } else {
-                    encodeValue(value, sb, depth, false);
-                }
-            }
+    void encodeTabularRow(List<?> row, StringBuilder sb, int depth) {
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) sb.append(config.getDelimiter());
+            encodeValue(row.get(i), sb, depth, false);
         }
     }
 
-    private String indent(int depth) {
+    String indent(int depth) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < depth * config.getIndent(); i++) {
             sb.append(' ');
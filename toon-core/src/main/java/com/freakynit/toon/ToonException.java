@@ -1,4 +1,39 @@
 package com.freakynit.toon;
 
-public class ToonException {
+public class ToonException extends RuntimeException {
+    private final int line;
+    private final int column;
+    private final long offset;
+
+    public ToonException(String message, int line, int column) {
+        super(message + " (line " + line + ", column " + column + ")");
+        this.line = line;
+        this.column = column;
+        this.offset = -1;
+    }
+
+    // Binary input has no lines, so errors carry the byte offset instead
+    public ToonException(String message, long offset) {
+        super(message + " (offset " + offset + ")");
+        this.line = -1;
+        this.column = -1;
+        this.offset = offset;
+    }
+
+    public ToonException(String message, int line, int column, Throwable cause) {
+        this(message, line, column);
+        initCause(cause);
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
 }
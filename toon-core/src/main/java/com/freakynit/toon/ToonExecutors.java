@@ -0,0 +1,13 @@
+package com.freakynit.toon;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+final class ToonExecutors {
+    private ToonExecutors() {
+    }
+
+    static Executor defaultExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+}
@@ -0,0 +1,112 @@
+package com.freakynit.toon;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ToonFragmentCache {
+    // Renderings kept per subtree, e.g. at the root and under a key, or under two configs; the least recently used goes
+    private static final int MAX_RENDERINGS = 4;
+
+    private final Map<IdentityKey, Entry> entries = new HashMap<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    public synchronized void markImmutable(Object subtree) {
+        if (!(subtree instanceof Map) && !(subtree instanceof List)) {
+            throw new IllegalArgumentException("Only maps and lists can be marked immutable");
+        }
+        expunge();
+        entries.putIfAbsent(new IdentityKey(subtree, queue), new Entry());
+    }
+
+    public synchronized void unmark(Object subtree) {
+        expunge();
+        entries.remove(new IdentityKey(subtree, null));
+    }
+
+    public synchronized boolean isImmutable(Object subtree) {
+        return entries.containsKey(new IdentityKey(subtree, null));
+    }
+
+    public synchronized int size() {
+        expunge();
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        while (queue.poll() != null) {
+            // drain
+        }
+    }
+
+    // context tells apart renderings that differ for the same subtree, e.g. a list under a key vs. at the root
+    synchronized Fragment get(Object subtree, ToonConfig config, String context) {
+        Entry entry = entries.get(new IdentityKey(subtree, null));
+        return entry == null ? null : entry.fragments.get(signature(config) + '\u0000' + context);
+    }
+
+    synchronized void put(Object subtree, ToonConfig config, String context, Fragment fragment) {
+        Entry entry = entries.get(new IdentityKey(subtree, null));
+        if (entry != null) {
+            entry.fragments.put(signature(config) + '\u0000' + context, fragment);
+        }
+    }
+
+    private void expunge() {
+        Object ref;
+        while ((ref = queue.poll()) != null) {
+            entries.remove(ref);
+        }
+    }
+
+    private static String signature(ToonConfig config) {
+        return config.getDelimiter() + '\u0000' + config.getIndent() + '\u0000' + config.getLengthMarker()
+                + '\u0000' + config.isTypedHeaders() + '\u0000' + config.getSchemas();
+    }
+
+    // Encoded text at depth 0 plus the metrics counted while encoding it, replayed on every hit
+    static final class Fragment {
+        final String text;
+        final ToonMetrics counts;
+
+        Fragment(String text, ToonMetrics counts) {
+            this.text = text;
+            this.counts = counts;
+        }
+    }
+
+    private static class Entry {
+        private final Map<String, Fragment> fragments = new LinkedHashMap<String, Fragment>(8, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Fragment> eldest) {
+                return size() > MAX_RENDERINGS;
+            }
+        };
+    }
+
+    private static class IdentityKey extends WeakReference<Object> {
+        private final int hash;
+
+        IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof IdentityKey)) return false;
+            Object referent = get();
+            return referent != null && referent == ((IdentityKey) o).get();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.freakynit.toon;
+
+import java.util.List;
+
+public interface ToonHandler {
+    void startObject();
+
+    void key(String key);
+
+    void endObject();
+
+    void startArray(int declaredLength);
+
+    // Tabular arrays announce their row count and columns before the first row
+    default void startTabularArray(int declaredLength, List<String> columns) {
+        startArray(declaredLength);
+    }
+
+    // Types as declared in the header, ANY where a column has none; null when the header declares no types
+    default void startTabularArray(int declaredLength, List<String> columns, List<ToonSchema.Type> types) {
+        startTabularArray(declaredLength, columns);
+    }
+
+    void endArray();
+
+    void value(Object value);
+
+    default void longValue(long value) {
+        value(Long.valueOf(value));
+    }
+
+    default void doubleValue(double value) {
+        value(Double.valueOf(value));
+    }
+
+    default void booleanValue(boolean value) {
+        value(Boolean.valueOf(value));
+    }
+}
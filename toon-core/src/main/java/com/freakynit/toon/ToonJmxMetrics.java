@@ -0,0 +1,182 @@
+package com.freakynit.toon;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ToonJmxMetrics implements ToonMetricsListener, ToonJmxMetricsMBean {
+    public static final String DEFAULT_OBJECT_NAME = "com.freakynit.toon:type=ToonMetrics";
+
+    private final LongAdder encodeCount = new LongAdder();
+    private final LongAdder decodeCount = new LongAdder();
+    private final LongAdder encodeOutputBytes = new LongAdder();
+    private final LongAdder decodeInputBytes = new LongAdder();
+    private final LongAdder rowsEncoded = new LongAdder();
+    private final LongAdder rowsDecoded = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder tabularArrays = new LongAdder();
+    private final LongAdder inlineArrays = new LongAdder();
+    private final LongAdder listArrays = new LongAdder();
+    private final LongAdder strings = new LongAdder();
+    private final LongAdder quotedStrings = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder splitNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+
+    public static ToonJmxMetrics register() {
+        return register(DEFAULT_OBJECT_NAME);
+    }
+
+    public static ToonJmxMetrics register(String objectName) {
+        ToonJmxMetrics metrics = new ToonJmxMetrics();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(metrics, new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register MBean " + objectName, e);
+        }
+        return metrics;
+    }
+
+    public static void unregister(String objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister MBean " + objectName, e);
+        }
+    }
+
+    @Override
+    public void onEncode(ToonMetrics metrics) {
+        encodeCount.increment();
+        encodeOutputBytes.add(metrics.getOutputBytes());
+        rowsEncoded.add(metrics.getRows());
+        encodeNanos.add(metrics.getEncodeNanos());
+        accumulateShape(metrics);
+    }
+
+    @Override
+    public void onDecode(ToonMetrics metrics) {
+        decodeCount.increment();
+        decodeInputBytes.add(metrics.getInputBytes());
+        rowsDecoded.add(metrics.getRows());
+        splitNanos.add(metrics.getSplitNanos());
+        parseNanos.add(metrics.getParseNanos());
+        accumulateShape(metrics);
+    }
+
+    private void accumulateShape(ToonMetrics metrics) {
+        maxDepth.accumulateAndGet(metrics.getMaxDepth(), Math::max);
+        tabularArrays.add(metrics.getTabularArrays());
+        inlineArrays.add(metrics.getInlineArrays());
+        listArrays.add(metrics.getListArrays());
+        strings.add(metrics.getStrings());
+        quotedStrings.add(metrics.getQuotedStrings());
+    }
+
+    @Override
+    public long getEncodeCount() {
+        return encodeCount.sum();
+    }
+
+    @Override
+    public long getDecodeCount() {
+        return decodeCount.sum();
+    }
+
+    @Override
+    public long getEncodeOutputBytes() {
+        return encodeOutputBytes.sum();
+    }
+
+    @Override
+    public long getDecodeInputBytes() {
+        return decodeInputBytes.sum();
+    }
+
+    @Override
+    public long getRowsEncoded() {
+        return rowsEncoded.sum();
+    }
+
+    @Override
+    public long getRowsDecoded() {
+        return rowsDecoded.sum();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    @Override
+    public long getTabularArrays() {
+        return tabularArrays.sum();
+    }
+
+    @Override
+    public long getInlineArrays() {
+        return inlineArrays.sum();
+    }
+
+    @Override
+    public long getListArrays() {
+        return listArrays.sum();
+    }
+
+    @Override
+    public double getQuotingRatio() {
+        long total = strings.sum();
+        return total == 0 ? 0.0 : (double) quotedStrings.sum() / total;
+    }
+
+    @Override
+    public long getEncodeNanos() {
+        return encodeNanos.sum();
+    }
+
+    @Override
+    public long getSplitNanos() {
+        return splitNanos.sum();
+    }
+
+    @Override
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+
+    @Override
+    public double getAverageEncodeMicros() {
+        long count = encodeCount.sum();
+        return count == 0 ? 0.0 : encodeNanos.sum() / 1000.0 / count;
+    }
+
+    @Override
+    public double getAverageDecodeMicros() {
+        long count = decodeCount.sum();
+        return count == 0 ? 0.0 : (splitNanos.sum() + parseNanos.sum()) / 1000.0 / count;
+    }
+
+    @Override
+    public void reset() {
+        encodeCount.reset();
+        decodeCount.reset();
+        encodeOutputBytes.reset();
+        decodeInputBytes.reset();
+        rowsEncoded.reset();
+        rowsDecoded.reset();
+        maxDepth.set(0);
+        tabularArrays.reset();
+        inlineArrays.reset();
+        listArrays.reset();
+        strings.reset();
+        quotedStrings.reset();
+        encodeNanos.reset();
+        splitNanos.reset();
+        parseNanos.reset();
+    }
+}
@@ -0,0 +1,37 @@
+package com.freakynit.toon;
+
+public interface ToonJmxMetricsMBean {
+    long getEncodeCount();
+
+    long getDecodeCount();
+
+    long getEncodeOutputBytes();
+
+    long getDecodeInputBytes();
+
+    long getRowsEncoded();
+
+    long getRowsDecoded();
+
+    int getMaxDepth();
+
+    long getTabularArrays();
+
+    long getInlineArrays();
+
+    long getListArrays();
+
+    double getQuotingRatio();
+
+    long getEncodeNanos();
+
+    long getSplitNanos();
+
+    long getParseNanos();
+
+    double getAverageEncodeMicros();
+
+    double getAverageDecodeMicros();
+
+    void reset();
+}
@@ -0,0 +1,71 @@
+package com.freakynit.toon;
+
+// Bounds the decoder enforces while parsing; lengths count chars, arrays count items or rows
+public class ToonLimits {
+    private int maxDepth = 1000;
+    private int maxLineLength = Integer.MAX_VALUE;
+    private long maxDocumentLength = Long.MAX_VALUE;
+    private int maxArrayLength = Integer.MAX_VALUE;
+    private int maxStringLength = Integer.MAX_VALUE;
+
+    // Tight enough for payloads from outside the process, loose enough for ordinary documents
+    public static ToonLimits untrusted() {
+        ToonLimits limits = new ToonLimits();
+        limits.setMaxDepth(64);
+        limits.setMaxLineLength(1 << 20);
+        limits.setMaxDocumentLength(64L << 20);
+        limits.setMaxArrayLength(1_000_000);
+        limits.setMaxStringLength(1 << 20);
+        return limits;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = positive(maxDepth);
+    }
+
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    public void setMaxLineLength(int maxLineLength) {
+        this.maxLineLength = positive(maxLineLength);
+    }
+
+    public long getMaxDocumentLength() {
+        return maxDocumentLength;
+    }
+
+    public void setMaxDocumentLength(long maxDocumentLength) {
+        if (maxDocumentLength < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + maxDocumentLength);
+        }
+        this.maxDocumentLength = maxDocumentLength;
+    }
+
+    public int getMaxArrayLength() {
+        return maxArrayLength;
+    }
+
+    public void setMaxArrayLength(int maxArrayLength) {
+        this.maxArrayLength = positive(maxArrayLength);
+    }
+
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    public void setMaxStringLength(int maxStringLength) {
+        this.maxStringLength = positive(maxStringLength);
+    }
+
+    private static int positive(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        return limit;
+    }
+}
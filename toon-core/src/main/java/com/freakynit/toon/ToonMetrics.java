@@ -0,0 +1,132 @@
+package com.freakynit.toon;
+
+// Counts for one encode or decode call. Sizes are UTF-8 bytes of the TOON text, so outputBytes for an encode and
+// inputBytes for a decode; the other side of either call is an object tree, which has no byte size, and stays 0.
+public class ToonMetrics {
+    long inputBytes;
+    long outputBytes;
+    long rows;
+    int maxDepth;
+    long tabularArrays;
+    long inlineArrays;
+    long listArrays;
+    long strings;
+    long quotedStrings;
+    long splitNanos;
+    long parseNanos;
+    long encodeNanos;
+
+    ToonMetrics() {
+    }
+
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getTabularArrays() {
+        return tabularArrays;
+    }
+
+    public long getInlineArrays() {
+        return inlineArrays;
+    }
+
+    public long getListArrays() {
+        return listArrays;
+    }
+
+    public long getStrings() {
+        return strings;
+    }
+
+    public long getQuotedStrings() {
+        return quotedStrings;
+    }
+
+    public double getQuotingRatio() {
+        return strings == 0 ? 0.0 : (double) quotedStrings / strings;
+    }
+
+    public long getSplitNanos() {
+        return splitNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getEncodeNanos() {
+        return encodeNanos;
+    }
+
+    public long getTotalNanos() {
+        return splitNanos + parseNanos + encodeNanos;
+    }
+
+    void depth(int depth) {
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    static long utf8Length(String s) {
+        long bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            bytes += utf8Length(s.charAt(i));
+        }
+        return bytes;
+    }
+
+    static long utf8Length(char[] chars, int start, int end) {
+        long bytes = 0;
+        for (int i = start; i < end; i++) {
+            bytes += utf8Length(chars[i]);
+        }
+        return bytes;
+    }
+
+    // Each half of a surrogate pair counts two of its four bytes, so a pair split across reads still adds up
+    private static int utf8Length(char c) {
+        return c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+    }
+
+    // Adds counts collected for a cached fragment that was encoded at depth 0 and is now emitted at depthOffset
+    void add(ToonMetrics fragment, int depthOffset) {
+        rows += fragment.rows;
+        tabularArrays += fragment.tabularArrays;
+        inlineArrays += fragment.inlineArrays;
+        listArrays += fragment.listArrays;
+        strings += fragment.strings;
+        quotedStrings += fragment.quotedStrings;
+        depth(fragment.maxDepth + depthOffset);
+    }
+
+    @Override
+    public String toString() {
+        return "ToonMetrics{" +
+                "inputBytes=" + inputBytes +
+                ", outputBytes=" + outputBytes +
+                ", rows=" + rows +
+                ", maxDepth=" + maxDepth +
+                ", tabularArrays=" + tabularArrays +
+                ", inlineArrays=" + inlineArrays +
+                ", listArrays=" + listArrays +
+                ", quotingRatio=" + getQuotingRatio() +
+                ", splitNanos=" + splitNanos +
+                ", parseNanos=" + parseNanos +
+                ", encodeNanos=" + encodeNanos +
+                '}';
+    }
+}
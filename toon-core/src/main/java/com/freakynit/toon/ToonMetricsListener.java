@@ -0,0 +1,12 @@
+package com.freakynit.toon;
+
+public interface ToonMetricsListener {
+    ToonMetricsListener NOOP = new ToonMetricsListener() {
+    };
+
+    default void onEncode(ToonMetrics metrics) {
+    }
+
+    default void onDecode(ToonMetrics metrics) {
+    }
+}
@@ -0,0 +1,374 @@
+package com.freakynit.toon;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Canonical TOON numbers: no trailing fractional zeros, -0 written as 0. Doubles use the Schubfach algorithm
+// (R. Giulietti) to find the shortest decimal that reads back to the same value, in plain digits from 1e-6 up to
+// 1e18 and as d.ddde<exp> outside that range, so 1e300 stays short and an integral one still parses back as a Double.
+final class ToonNumbers {
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final long C_TINY = 3;
+    private static final int BQ_MASK = 0x7ff;
+    private static final long T_MASK = (1L << (P - 1)) - 1;
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    // Plain notation for decimal exponents in [PLAIN_MIN_EXPONENT, PLAIN_MAX_EXPONENT]; integers below 1e18 fit a long
+    private static final int PLAIN_MIN_EXPONENT = -6;
+    private static final int PLAIN_MAX_EXPONENT = 17;
+
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] SMALL_POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private ToonNumbers() {
+    }
+
+    static boolean isIntegral(Number num) {
+        return num instanceof Long || num instanceof Integer || num instanceof Short || num instanceof Byte
+                || num instanceof AtomicLong || num instanceof AtomicInteger;
+    }
+
+    static void append(Number num, StringBuilder sb) {
+        if (isIntegral(num)) {
+            sb.append(num.longValue());
+        } else if (num instanceof Double) {
+            appendDouble(num.doubleValue(), sb);
+        } else if (num instanceof Float) {
+            appendFloat(num.floatValue(), sb);
+        } else if (num instanceof BigDecimal) {
+            appendBigDecimal((BigDecimal) num, sb);
+        } else if (num instanceof BigInteger) {
+            sb.append(num.toString());
+        } else {
+            sb.append(num.toString());
+        }
+    }
+
+    static void appendFloat(float f, StringBuilder sb) {
+        if (Float.isNaN(f) || Float.isInfinite(f)) {
+            sb.append("null");
+        } else if (f == 0) {
+            sb.append('0');
+        } else {
+            // Float.toString keeps the float's own short form (0.1f is 0.1, not 0.10000000149011612)
+            BigDecimal shortest = new BigDecimal(Float.toString(f));
+            if (f < 0) {
+                sb.append('-');
+            }
+            appendDecimal(shortest.unscaledValue().abs().longValueExact(), -shortest.scale(), sb);
+        }
+    }
+
+    // Same ranges as doubles, except that an integer needing at most as many padding zeros as 1e17 stays in plain
+    // digits and so reads back exact. A huge scale is never padded out.
+    static void appendBigDecimal(BigDecimal value, StringBuilder sb) {
+        if (value.signum() == 0) {
+            sb.append('0');
+            return;
+        }
+        BigDecimal stripped = value.stripTrailingZeros();
+        long exponent = (long) stripped.precision() - stripped.scale() - 1;
+        boolean integer = stripped.scale() <= 0 && -stripped.scale() <= PLAIN_MAX_EXPONENT;
+        if (integer || exponent >= PLAIN_MIN_EXPONENT && exponent <= PLAIN_MAX_EXPONENT) {
+            sb.append(stripped.toPlainString());
+            return;
+        }
+        String digits = stripped.unscaledValue().abs().toString();
+        if (stripped.signum() < 0) {
+            sb.append('-');
+        }
+        sb.append(digits.charAt(0));
+        if (digits.length() > 1) {
+            sb.append('.').append(digits, 1, digits.length());
+        }
+        sb.append('e').append(exponent);
+    }
+
+    static void appendDouble(double v, StringBuilder sb) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            sb.append("null");
+            return;
+        }
+        if (bq == 0 && t == 0) {
+            sb.append('0');
+            return;
+        }
+        if (bits < 0) {
+            sb.append('-');
+        }
+        if (bq != 0) {
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    sb.append(f);
+                    return;
+                }
+            }
+            toDecimal(-mq, c, 0, sb);
+        } else if (t < C_TINY) {
+            toDecimal(Q_MIN, 10 * t, -1, sb);
+        } else {
+            toDecimal(Q_MIN, t, 0, sb);
+        }
+    }
+
+    private static void toDecimal(int q, long c, int dk, StringBuilder sb) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long g1 = Powers.G[(k - K_MIN) << 1];
+        long g0 = Powers.G[(k - K_MIN) << 1 | 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // Try one digit less first: s / 10 and s / 10 + 1, scaled back up
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                appendDecimal(upin ? sp10 : tp10, k, sb);
+                return;
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            appendDecimal(uin ? s : t, k + dk, sb);
+            return;
+        }
+        long cmp = vb - (s + t << 1);
+        appendDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, sb);
+    }
+
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    private static long multiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y);
+    }
+
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    // Writes f * 10^e (f > 0) in plain notation inside the plain range, scientific notation outside it
+    private static void appendDecimal(long f, int e, StringBuilder sb) {
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        char[] digits = new char[19];
+        int length = 0;
+        for (long rest = f; rest != 0; rest /= 10) {
+            length++;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + f % 10);
+            f /= 10;
+        }
+
+        int exponent = length + e - 1;
+        if (exponent < PLAIN_MIN_EXPONENT || exponent > PLAIN_MAX_EXPONENT) {
+            sb.append(digits[0]);
+            if (length > 1) {
+                sb.append('.').append(digits, 1, length - 1);
+            }
+            sb.append('e').append(exponent);
+        } else if (e >= 0) {
+            sb.append(digits, 0, length);
+            appendZeros(e, sb);
+        } else if (exponent >= 0) {
+            sb.append(digits, 0, exponent + 1).append('.').append(digits, exponent + 1, length - exponent - 1);
+        } else {
+            sb.append("0.");
+            appendZeros(-exponent - 1, sb);
+            sb.append(digits, 0, length);
+        }
+    }
+
+    private static void appendZeros(int count, StringBuilder sb) {
+        for (int i = 0; i < count; i++) {
+            sb.append('0');
+        }
+    }
+
+    // Parses the grammar -?digits(.digits)?([eE][+-]?digits)? without allocating for the common cases.
+    // Integers come back as Long, or BigInteger past the long range; anything with a fraction or exponent as Double,
+    // or BigDecimal when it overflows or underflows a double, so no literal reads back as infinity or a false zero.
+    // An exponent too large even for BigDecimal gives null, leaving the text a string.
+    static Number parse(String s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && s.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        int intStart = i;
+        long mantissa = 0;
+        int significant = 0;
+        boolean overflow = false;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') break;
+            if (mantissa != 0 || c != '0') {
+                if (significant < 19) {
+                    mantissa = mantissa * 10 + (c - '0');
+                } else {
+                    overflow = true;
+                }
+                significant++;
+            }
+            i++;
+        }
+        if (i == intStart) return null;
+
+        int fractionDigits = 0;
+        if (i < end && s.charAt(i) == '.') {
+            i++;
+            int fracStart = i;
+            while (i < end) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') break;
+                if (mantissa != 0 || c != '0') {
+                    if (significant < 19) {
+                        mantissa = mantissa * 10 + (c - '0');
+                    } else {
+                        overflow = true;
+                    }
+                    significant++;
+                }
+                i++;
+            }
+            fractionDigits = i - fracStart;
+            if (fractionDigits == 0) return null;
+        }
+
+        int exponent = 0;
+        boolean hasExponent = false;
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            hasExponent = true;
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                negativeExponent = s.charAt(i) == '-';
+                i++;
+            }
+            int expStart = i;
+            while (i < end) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') break;
+                if (exponent < 100_000) exponent = exponent * 10 + (c - '0');
+                i++;
+            }
+            if (i == expStart) return null;
+            if (negativeExponent) exponent = -exponent;
+        }
+        if (i != end) return null;
+
+        if (fractionDigits == 0 && !hasExponent) {
+            if (!overflow && mantissa >= 0) {
+                return negative ? -mantissa : mantissa;
+            }
+            BigInteger big = new BigInteger(s.substring(start, end));
+            return big.bitLength() < 64 ? (Number) big.longValue() : big;
+        }
+
+        if (!overflow && significant <= MAX_FAST_DIGITS) {
+            // Both the digits and the power of ten are exact doubles, so one rounding gives the right answer
+            int scale = exponent - fractionDigits;
+            double value = mantissa;
+            if (scale == 0 || mantissa == 0) {
+                return negative ? -value : value;
+            }
+            if (scale > 0 && scale <= 22) {
+                value *= SMALL_POWERS[scale];
+                return negative ? -value : value;
+            }
+            if (scale < 0 && scale >= -22) {
+                value /= SMALL_POWERS[-scale];
+                return negative ? -value : value;
+            }
+        }
+        String literal = s.substring(start, end);
+        double value = Double.parseDouble(literal);
+        if (!Double.isInfinite(value) && (value != 0 || significant == 0)) {
+            return value;
+        }
+        try {
+            return new BigDecimal(literal);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // g = floor(10^-k * 2^(125 - flog2pow10(-k))) + 1, split into 63-bit halves g1, g0 for k in [K_MIN, K_MAX]
+    private static final class Powers {
+        private static final long[] G = build();
+
+        private static long[] build() {
+            long[] g = new long[(K_MAX - K_MIN + 1) << 1];
+            BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+            for (int k = K_MIN; k <= K_MAX; k++) {
+                int r = flog2pow10(-k) - 125;
+                BigInteger value;
+                if (k <= 0) {
+                    BigInteger pow = BigInteger.TEN.pow(-k);
+                    value = r <= 0 ? pow.shiftLeft(-r) : pow.shiftRight(r);
+                } else {
+                    BigInteger pow = BigInteger.TEN.pow(k);
+                    value = r <= 0 ? BigInteger.ONE.shiftLeft(-r).divide(pow) : BigInteger.ONE.divide(pow.shiftLeft(r));
+                }
+                value = value.add(BigInteger.ONE);
+                g[(k - K_MIN) << 1] = value.shiftRight(63).longValue();
+                g[(k - K_MIN) << 1 | 1] = value.and(mask).longValue();
+            }
+            return g;
+        }
+    }
+}
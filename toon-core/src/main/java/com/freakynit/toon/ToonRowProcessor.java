@@ -0,0 +1,321 @@
+package com.freakynit.toon;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ToonRowProcessor implements Flow.Processor<Object, String> {
+    public static final long UNKNOWN_ROWS = -1;
+
+    private static final int DEFERRED_BATCH = 256;
+    private static final int DEFERRED_CHUNK_CHARS = 8192;
+
+    private final ToonEncoder encoder;
+    private final List<String> headers;
+    private final String key;
+    private final long expectedRows;
+    private final long maxRows;
+    private final String rowPrefix;
+    private final int rowDepth;
+
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final StringBuilder rowBuffer = new StringBuilder();
+    private StringBuilder deferredRows;
+
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super String> downstream;
+    private long demand;
+    private long outstanding;
+    private long rows;
+    private boolean completed;
+    private boolean terminated;
+    private boolean cancelled;
+    private Throwable error;
+
+    public ToonRowProcessor(List<String> headers, long expectedRows) {
+        this(headers, null, expectedRows, new ToonConfig());
+    }
+
+    // The header carries the row count, so it is written first and every row streams out as soon as it is requested
+    public ToonRowProcessor(List<String> headers, String key, long expectedRows, ToonConfig config) {
+        this(headers, key, expectedRows, config, false, expectedRows);
+        if (expectedRows < 0) {
+            throw new IllegalArgumentException("Expected row count must be known, got " + expectedRows
+                    + "; use bufferUntilComplete when it is not");
+        }
+    }
+
+    // For publishers that cannot tell the row count up front. Nothing is emitted until onComplete, and every
+    // encoded row is held in memory until then. Rows are capped at the config's array limit, which is also the
+    // most a decoder with that config would read back.
+    public static ToonRowProcessor bufferUntilComplete(List<String> headers, String key, ToonConfig config) {
+        return bufferUntilComplete(headers, key, config, config.getLimits().getMaxArrayLength());
+    }
+
+    // Past maxRows the upstream is cancelled and the stream fails with IllegalStateException
+    public static ToonRowProcessor bufferUntilComplete(List<String> headers, String key, ToonConfig config, long maxRows) {
+        if (maxRows < 0) {
+            throw new IllegalArgumentException("Row limit must not be negative, got " + maxRows);
+        }
+        return new ToonRowProcessor(headers, key, UNKNOWN_ROWS, config, true, maxRows);
+    }
+
+    private ToonRowProcessor(List<String> headers, String key, long expectedRows, ToonConfig config, boolean buffered,
+                             long maxRows) {
+        if (headers == null || headers.isEmpty()) {
+            throw new IllegalArgumentException("Tabular rows need at least one header");
+        }
+        this.encoder = new ToonEncoder(config);
+        this.headers = new ArrayList<>(headers);
+        this.key = key;
+        this.expectedRows = expectedRows;
+        this.maxRows = maxRows;
+        this.rowDepth = key == null ? 0 : 1;
+        this.rowPrefix = "\n" + encoder.indent(rowDepth);
+        if (buffered) {
+            deferredRows = new StringBuilder();
+        } else if (expectedRows >= 0) {
+            pending.add(header(expectedRows));
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        Objects.requireNonNull(subscriber);
+        synchronized (this) {
+            if (downstream != null) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("ToonRowProcessor supports a single subscriber"));
+                return;
+            }
+            downstream = subscriber;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Requested " + n + " chunks, must be positive"));
+                    return;
+                }
+                synchronized (ToonRowProcessor.this) {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                Flow.Subscription subscription;
+                synchronized (ToonRowProcessor.this) {
+                    cancelled = true;
+                    pending.clear();
+                    subscription = upstream;
+                }
+                if (subscription != null) subscription.cancel();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(Object item) {
+        String chunk;
+        try {
+            if (expectedRows >= 0 && getRowCount() >= expectedRows) {
+                throw new IllegalStateException("Declared " + expectedRows + " rows but publisher produced more");
+            }
+            if (getRowCount() >= maxRows) {
+                throw new IllegalStateException("Buffered rows exceed the limit of " + maxRows);
+            }
+            rowBuffer.setLength(0);
+            rowBuffer.append(rowPrefix);
+            encodeRow(item, rowBuffer);
+            chunk = rowBuffer.toString();
+        } catch (RuntimeException e) {
+            Flow.Subscription subscription;
+            synchronized (this) {
+                subscription = upstream;
+                upstream = null;
+            }
+            if (subscription != null) subscription.cancel();
+            fail(e);
+            return;
+        }
+
+        synchronized (this) {
+            outstanding--;
+            rows++;
+            if (deferredRows != null) {
+                deferredRows.append(chunk);
+            } else {
+                pending.add(chunk);
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            if (expectedRows >= 0 && rows != expectedRows) {
+                error = new IllegalStateException("Declared " + expectedRows + " rows but publisher produced " + rows);
+            } else if (deferredRows != null) {
+                String rest = header(rows) + deferredRows;
+                deferredRows = null;
+                for (int i = 0; i < rest.length(); i += DEFERRED_CHUNK_CHARS) {
+                    pending.add(rest.substring(i, Math.min(rest.length(), i + DEFERRED_CHUNK_CHARS)));
+                }
+            }
+            completed = true;
+        }
+        drain();
+    }
+
+    public synchronized long getRowCount() {
+        return rows;
+    }
+
+    // The declared total, or UNKNOWN_ROWS for a processor from bufferUntilComplete
+    public long getExpectedRows() {
+        return expectedRows;
+    }
+
+    // The most rows the processor accepts; the declared total unless the processor buffers
+    public long getMaxRows() {
+        return maxRows;
+    }
+
+    private void encodeRow(Object item, StringBuilder sb) {
+        if (item instanceof Map) {
+            Map<?, ?> row = (Map<?, ?>) item;
+            checkCells(row.values());
+            encoder.encodeTabularRow(row, headers, sb, rowDepth);
+        } else if (item instanceof List) {
+            List<?> row = (List<?>) item;
+            if (row.size() != headers.size()) {
+                throw new IllegalArgumentException("Row has " + row.size() + " cells, header has " + headers.size());
+            }
+            checkCells(row);
+            encoder.encodeTabularRow(row, sb, rowDepth);
+        } else {
+            throw new IllegalArgumentException("Rows must be maps or lists, got " +
+                    (item == null ? "null" : item.getClass().getName()));
+        }
+    }
+
+    private void checkCells(Collection<?> cells) {
+        for (Object cell : cells) {
+            if (cell instanceof Map || cell instanceof List) {
+                throw new IllegalArgumentException("Tabular rows cannot contain nested maps or lists");
+            }
+        }
+    }
+
+    private String header(long size) {
+        StringBuilder sb = new StringBuilder();
+        if (key != null) {
+            encoder.encodeKey(key, sb);
+            sb.append(": ");
+        }
+        encoder.encodeTabularHeader(headers, size, sb);
+        return sb.toString();
+    }
+
+    private void fail(Throwable throwable) {
+        synchronized (this) {
+            if (error == null) {
+                error = throwable;
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Flow.Subscriber<? super String> subscriber;
+            synchronized (this) {
+                subscriber = downstream;
+            }
+            if (subscriber == null) {
+                continue;
+            }
+
+            while (true) {
+                String chunk;
+                synchronized (this) {
+                    if (cancelled || terminated || error != null || demand == 0 || pending.isEmpty()) break;
+                    chunk = pending.poll();
+                    demand--;
+                }
+                subscriber.onNext(chunk);
+            }
+
+            Throwable failure = null;
+            boolean done = false;
+            long request = 0;
+            Flow.Subscription subscription;
+            synchronized (this) {
+                subscription = upstream;
+                if (!terminated && !cancelled) {
+                    if (error != null) {
+                        failure = error;
+                        terminated = true;
+                    } else if (completed && pending.isEmpty()) {
+                        done = true;
+                        terminated = true;
+                    } else if (!completed && subscription != null) {
+                        if (deferredRows != null) {
+                            // Nothing is emitted until completion, so pull in fixed batches instead of by demand
+                            if (outstanding == 0) request = DEFERRED_BATCH;
+                        } else {
+                            request = demand - pending.size() - outstanding;
+                        }
+                        if (request > 0) outstanding += request;
+                    }
+                }
+            }
+
+            if (failure != null) {
+                subscriber.onError(failure);
+            } else if (done) {
+                subscriber.onComplete();
+            } else if (request > 0) {
+                subscription.request(request);
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+}
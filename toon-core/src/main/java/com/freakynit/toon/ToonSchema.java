@@ -0,0 +1,138 @@
+package com.freakynit.toon;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ToonSchema {
+    public enum Type {
+        INT("int"),
+        FLOAT("float"),
+        BOOL("bool"),
+        STRING("string"),
+        ANY("");
+
+        private final String hint;
+
+        Type(String hint) {
+            this.hint = hint;
+        }
+
+        public String hint() {
+            return hint;
+        }
+
+        public static Type fromHint(String hint) {
+            for (Type type : values()) {
+                if (type != ANY && type.hint.equals(hint)) return type;
+            }
+            throw new IllegalArgumentException("Unknown column type: " + hint);
+        }
+
+        static Type of(Object value) {
+            if (value == null) return null;
+            if (value instanceof Number) {
+                return ToonNumbers.isIntegral((Number) value) || value instanceof BigInteger ? INT : FLOAT;
+            }
+            if (value instanceof Boolean) return BOOL;
+            if (value instanceof String) return STRING;
+            return ANY;
+        }
+
+        boolean accepts(Object value) {
+            switch (this) {
+                case INT:
+                    return value instanceof Number && (ToonNumbers.isIntegral((Number) value) || value instanceof BigInteger);
+                case FLOAT:
+                    return value instanceof Double || value instanceof Float || value instanceof BigDecimal
+                            || (value instanceof Number && ToonNumbers.isIntegral((Number) value));
+                case BOOL:
+                    return value instanceof Boolean;
+                case STRING:
+                    return value instanceof String;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private final List<String> columns = new ArrayList<>();
+    private final List<Type> types = new ArrayList<>();
+    private final Map<String, Type> byName = new HashMap<>();
+
+    public static ToonSchema parse(String spec) {
+        String body = spec.trim();
+        if (body.startsWith("{") && body.endsWith("}")) {
+            body = body.substring(1, body.length() - 1);
+        }
+        ToonSchema schema = new ToonSchema();
+        for (String column : body.split(",")) {
+            String trimmed = column.trim();
+            int colon = trimmed.lastIndexOf(':');
+            if (colon == -1) {
+                schema.column(trimmed, Type.ANY);
+            } else {
+                schema.column(trimmed.substring(0, colon).trim(), Type.fromHint(trimmed.substring(colon + 1).trim()));
+            }
+        }
+        return schema;
+    }
+
+    public ToonSchema column(String name, Type type) {
+        if (byName.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate column: " + name);
+        }
+        columns.add(name);
+        types.add(type == null ? Type.ANY : type);
+        byName.put(name, type == null ? Type.ANY : type);
+        return this;
+    }
+
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    public List<Type> getTypes() {
+        return Collections.unmodifiableList(types);
+    }
+
+    public Type getType(String column) {
+        return byName.get(column);
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    // Every item must be a flat map whose keys are schema columns and whose values fit the column types
+    boolean accepts(List<?> rows) {
+        if (rows.isEmpty() || columns.isEmpty()) return false;
+        for (Object row : rows) {
+            if (!(row instanceof Map)) return false;
+            Map<?, ?> map = (Map<?, ?>) row;
+            if (map.size() > columns.size()) return false;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Type type = byName.get(entry.getKey().toString());
+                Object value = entry.getValue();
+                if (type == null || value instanceof Map || value instanceof List) return false;
+                if (value != null && !type.accepts(value)) return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(columns.get(i));
+            if (types.get(i) != Type.ANY) sb.append(':').append(types.get(i).hint());
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.freakynit.toon;
+
+import java.util.Arrays;
+
+final class ToonSplitter {
+    private int[] bounds = new int[32];
+    private int count;
+
+    int split(String s, int from, int to, String delimiter) {
+        count = 0;
+        if (delimiter.length() == 1) {
+            splitChar(s, from, to, delimiter.charAt(0));
+        } else {
+            splitString(s, from, to, delimiter);
+        }
+        return count;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int start(int i) {
+        return bounds[i << 1];
+    }
+
+    int end(int i) {
+        return bounds[(i << 1) + 1];
+    }
+
+    String text(String s, int i) {
+        return s.substring(start(i), end(i));
+    }
+
+    private void splitChar(String s, int from, int to, char delimiter) {
+        int nextQuote = indexOf(s, '"', from, to);
+        int pos = from;
+        while (true) {
+            int next = indexOf(s, delimiter, pos, to);
+            int fieldEnd = next == -1 ? to : next;
+            if (nextQuote != -1 && nextQuote < fieldEnd) {
+                next = scanQuoted(s, pos, to, String.valueOf(delimiter));
+                fieldEnd = next == -1 ? to : next;
+                nextQuote = fieldEnd < to ? indexOf(s, '"', fieldEnd + 1, to) : -1;
+            }
+            add(s, pos, fieldEnd);
+            if (next == -1) return;
+            pos = next + 1;
+        }
+    }
+
+    private void splitString(String s, int from, int to, String delimiter) {
+        int nextQuote = indexOf(s, '"', from, to);
+        int pos = from;
+        while (true) {
+            int next = s.indexOf(delimiter, pos);
+            if (next + delimiter.length() > to) next = -1;
+            int fieldEnd = next == -1 ? to : next;
+            if (nextQuote != -1 && nextQuote < fieldEnd) {
+                next = scanQuoted(s, pos, to, delimiter);
+                fieldEnd = next == -1 ? to : next;
+                nextQuote = fieldEnd < to ? indexOf(s, '"', fieldEnd + delimiter.length(), to) : -1;
+            }
+            add(s, pos, fieldEnd);
+            if (next == -1) return;
+            pos = next + delimiter.length();
+        }
+    }
+
+    // Slow path: walk the field char by char, skipping delimiters inside quotes
+    private static int scanQuoted(String s, int pos, int to, String delimiter) {
+        boolean inQuotes = false;
+        boolean escaped = false;
+        for (int i = pos; i < to; i++) {
+            char c = s.charAt(i);
+            if (escaped) {
+                escaped = false;
+            } else if (inQuotes && c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes && s.startsWith(delimiter, i) && i + delimiter.length() <= to) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void add(String s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        int slot = count << 1;
+        if (slot + 1 >= bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length << 1);
+        }
+        bounds[slot] = start;
+        bounds[slot + 1] = end;
+        count++;
+    }
+
+    private static int indexOf(String s, char c, int from, int to) {
+        int i = s.indexOf(c, from);
+        return i < to ? i : -1;
+    }
+}
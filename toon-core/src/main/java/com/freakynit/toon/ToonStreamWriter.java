@@ -0,0 +1,322 @@
+package com.freakynit.toon;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ToonStreamWriter implements Flushable, Closeable {
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private static final int OBJECT = 0;
+    private static final int LIST = 1;
+    private static final int INLINE = 2;
+    private static final int TABULAR = 3;
+
+    private final Writer out;
+    private final ToonConfig config;
+    private final ToonEncoder encoder;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD * 2);
+    private final List<Frame> frames = new ArrayList<>();
+    private boolean rootWritten;
+
+    public ToonStreamWriter(Writer out) {
+        this(out, new ToonConfig());
+    }
+
+    public ToonStreamWriter(Writer out, ToonConfig config) {
+        this.out = out;
+        this.config = config;
+        this.encoder = new ToonEncoder(config);
+    }
+
+    public ToonStreamWriter beginObject() {
+        Frame parent = current();
+        if (parent == null) {
+            beginRoot();
+            push(OBJECT, 0, "");
+        } else if (parent.type == OBJECT) {
+            takeValueSlot(parent);
+            // Only emitted once the first key shows up, so empty objects write nothing
+            push(OBJECT, parent.depth + 1, "\n" + encoder.indent(parent.depth + 1));
+        } else if (parent.type == LIST) {
+            startListItem(parent);
+            push(OBJECT, parent.depth + 1, "");
+        } else {
+            throw new IllegalStateException("Objects cannot appear inside inline or tabular arrays");
+        }
+        return this;
+    }
+
+    public ToonStreamWriter key(String key) {
+        Frame frame = current();
+        if (frame == null || frame.type != OBJECT) {
+            throw new IllegalStateException("Keys are only valid inside an object");
+        }
+        if (frame.expectingValue) {
+            throw new IllegalStateException("Key '" + key + "' follows a key without a value");
+        }
+        if (frame.written == 0) {
+            buffer.append(frame.prefix);
+        } else {
+            buffer.append('\n').append(encoder.indent(frame.depth));
+        }
+        encoder.encodeKey(key, buffer);
+        buffer.append(": ");
+        frame.key = key;
+        frame.written++;
+        frame.expectingValue = true;
+        return this;
+    }
+
+    public ToonStreamWriter endObject() {
+        Frame frame = pop(OBJECT);
+        if (frame.expectingValue) {
+            throw new IllegalStateException("Object ended after a key without a value");
+        }
+        return maybeFlush();
+    }
+
+    public ToonStreamWriter beginListArray(long count) {
+        return beginArray(LIST, count, null, null);
+    }
+
+    public ToonStreamWriter beginInlineArray(long count) {
+        return beginArray(INLINE, count, null, null);
+    }
+
+    public ToonStreamWriter beginTabularArray(List<String> headers, long count) {
+        return beginTabularArray(headers, null, count);
+    }
+
+    public ToonStreamWriter beginTabularArray(ToonSchema schema, long count) {
+        return beginTabularArray(schema.getColumns(), schema.getTypes(), count);
+    }
+
+    // Column types only reach the header when the config enables typed headers
+    public ToonStreamWriter beginTabularArray(List<String> headers, List<ToonSchema.Type> types, long count) {
+        if (headers == null || headers.isEmpty()) {
+            throw new IllegalArgumentException("Tabular arrays need at least one header");
+        }
+        if (types != null && types.size() != headers.size()) {
+            throw new IllegalArgumentException("Got " + types.size() + " column types for " + headers.size() + " headers");
+        }
+        return beginArray(TABULAR, count, new ArrayList<>(headers), config.isTypedHeaders() ? types : null);
+    }
+
+    public ToonStreamWriter row(Object row) {
+        Frame frame = current();
+        if (frame == null || frame.type != TABULAR) {
+            throw new IllegalStateException("Rows are only valid inside a tabular array");
+        }
+        countItem(frame);
+        buffer.append('\n').append(encoder.indent(frame.depth));
+        if (row instanceof Map) {
+            encoder.encodeTabularRow((Map<?, ?>) row, frame.headers, buffer, frame.depth);
+        } else if (row instanceof List) {
+            encoder.encodeTabularRow((List<?>) row, buffer, frame.depth);
+        } else {
+            throw new IllegalArgumentException("Rows must be maps or lists");
+        }
+        return maybeFlush();
+    }
+
+    public ToonStreamWriter endArray() {
+        Frame frame = frames.isEmpty() ? null : current();
+        if (frame == null || frame.type == OBJECT) {
+            throw new IllegalStateException("No array to end");
+        }
+        frames.remove(frames.size() - 1);
+        if (frame.written != frame.declared) {
+            throw new IllegalStateException("Array declared " + frame.declared + " items but " + frame.written + " were written");
+        }
+        return maybeFlush();
+    }
+
+    public ToonStreamWriter value(Object value) {
+        if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                key(entry.getKey().toString());
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+        if (value instanceof List) {
+            return writeList((List<?>) value);
+        }
+
+        Frame frame = current();
+        if (frame == null) {
+            beginRoot();
+        } else if (frame.type == OBJECT) {
+            takeValueSlot(frame);
+        } else if (frame.type == LIST) {
+            startListItem(frame);
+        } else if (frame.type == INLINE) {
+            countItem(frame);
+            if (frame.written > 1) buffer.append(config.getDelimiter());
+        } else {
+            return row(value);
+        }
+        encoder.encodeScalar(value, buffer);
+        return maybeFlush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.write(buffer.toString());
+        buffer.setLength(0);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!frames.isEmpty()) {
+            throw new IllegalStateException("Writer closed with " + frames.size() + " unfinished containers");
+        }
+        flush();
+        out.close();
+    }
+
+    private ToonStreamWriter writeList(List<?> list) {
+        Frame parent = current();
+        ToonSchema schema = parent != null && parent.type == OBJECT ? config.getSchema(parent.key) : null;
+        if (schema != null && schema.accepts(list)) {
+            beginTabularArray(schema, list.size());
+            for (Object item : list) row(item);
+            return endArray();
+        }
+
+        ToonArrayShape shape = ToonArrayShape.of(list);
+        switch (shape.layout()) {
+            case EMPTY:
+                beginListArray(0);
+                break;
+            case TABULAR:
+                beginTabularArray(shape.headers(), shape.types(), list.size());
+                for (Object item : list) row(item);
+                break;
+            case INLINE:
+                beginInlineArray(list.size());
+                for (Object item : list) value(item);
+                break;
+            default:
+                beginListArray(list.size());
+                for (Object item : list) value(item);
+        }
+        return endArray();
+    }
+
+    private ToonStreamWriter beginArray(int type, long count, List<String> headers, List<ToonSchema.Type> types) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Array length must be known up front, got " + count);
+        }
+        Frame parent = current();
+        int itemDepth;
+        if (parent == null) {
+            beginRoot();
+            itemDepth = 0;
+        } else if (parent.type == OBJECT) {
+            takeValueSlot(parent);
+            itemDepth = parent.depth + 1;
+        } else if (parent.type == LIST) {
+            startListItem(parent);
+            itemDepth = parent.depth + 1;
+        } else {
+            throw new IllegalStateException("Arrays cannot appear inside inline or tabular arrays");
+        }
+
+        if (count == 0) {
+            buffer.append('[').append(config.getLengthMarker()).append("0]:");
+        } else if (type == TABULAR) {
+            encoder.encodeTabularHeader(headers, types, count, buffer);
+        } else {
+            buffer.append('[').append(config.getLengthMarker()).append(count)
+                    .append(config.getDelimiterDisplay()).append(type == INLINE ? "]: " : "]:");
+        }
+
+        Frame frame = push(type, itemDepth, null);
+        frame.declared = count;
+        frame.headers = headers;
+        return this;
+    }
+
+    private void beginRoot() {
+        if (rootWritten) {
+            throw new IllegalStateException("Only one root value can be written");
+        }
+        rootWritten = true;
+    }
+
+    private void takeValueSlot(Frame frame) {
+        if (!frame.expectingValue) {
+            throw new IllegalStateException("Value written without a key");
+        }
+        frame.expectingValue = false;
+    }
+
+    private void startListItem(Frame frame) {
+        countItem(frame);
+        buffer.append('\n').append(encoder.indent(frame.depth)).append("- ");
+    }
+
+    private void countItem(Frame frame) {
+        if (frame.written >= frame.declared) {
+            throw new IllegalStateException("Array declared " + frame.declared + " items but more were written");
+        }
+        frame.written++;
+    }
+
+    private Frame current() {
+        return frames.isEmpty() ? null : frames.get(frames.size() - 1);
+    }
+
+    private Frame push(int type, int depth, String prefix) {
+        Frame frame = new Frame(type, depth, prefix);
+        frames.add(frame);
+        return frame;
+    }
+
+    private Frame pop(int type) {
+        Frame frame = current();
+        if (frame == null || frame.type != type) {
+            throw new IllegalStateException("Mismatched end of container");
+        }
+        frames.remove(frames.size() - 1);
+        return frame;
+    }
+
+    private ToonStreamWriter maybeFlush() {
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            try {
+                out.write(buffer.toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.setLength(0);
+        }
+        return this;
+    }
+
+    private static class Frame {
+        private final int type;
+        private final int depth;
+        private final String prefix;
+        private List<String> headers;
+        private String key;
+        private long declared;
+        private long written;
+        private boolean expectingValue;
+
+        Frame(int type, int depth, String prefix) {
+            this.type = type;
+            this.depth = depth;
+            this.prefix = prefix;
+        }
+    }
+}
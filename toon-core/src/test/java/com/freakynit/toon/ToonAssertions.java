@@ -0,0 +1,111 @@
+package com.freakynit.toon;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// What a value must decode to after a text round trip, checked type for type. Integral values come back as
+// Long, or BigInteger past the long range. A double written as an integer (below 1e18, no fraction) comes back
+// as a Long of the same value, any other finite double as the same Double, and NaN or infinity as null. In a
+// typed float column every number comes back as a Double. A BigDecimal past the double range comes back unchanged.
+final class ToonAssertions {
+    private ToonAssertions() {
+    }
+
+    static void assertDecodes(Object original, Object decoded, ToonConfig config) {
+        assertDecodes(original, decoded, null, config.isTypedHeaders(), "$");
+    }
+
+    private static void assertDecodes(Object original, Object decoded, ToonSchema.Type column, boolean typed, String path) {
+        if (original instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) original;
+            Map<?, ?> actual = cast(decoded, Map.class, path);
+            assertEquals(map.size(), actual.size(), path + " size");
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String key = entry.getKey().toString();
+                assertTrue(actual.containsKey(key), path + " is missing key '" + key + "'");
+                assertDecodes(entry.getValue(), actual.get(key), null, typed, path + "." + key);
+            }
+        } else if (original instanceof List) {
+            List<?> list = (List<?>) original;
+            List<?> actual = cast(decoded, List.class, path);
+            assertEquals(list.size(), actual.size(), path + " size");
+            ToonArrayShape shape = ToonArrayShape.of(list);
+            boolean typedRows = typed && shape.layout() == ToonArrayShape.Layout.TABULAR;
+            for (int i = 0; i < list.size(); i++) {
+                if (!typedRows) {
+                    assertDecodes(list.get(i), actual.get(i), null, typed, path + "[" + i + "]");
+                    continue;
+                }
+                Map<?, ?> row = (Map<?, ?>) list.get(i);
+                Map<?, ?> decodedRow = cast(actual.get(i), Map.class, path + "[" + i + "]");
+                assertEquals(row.size(), decodedRow.size(), path + "[" + i + "] size");
+                for (int c = 0; c < shape.headers().size(); c++) {
+                    String header = shape.headers().get(c);
+                    Object cell = null;
+                    for (Map.Entry<?, ?> entry : row.entrySet()) {
+                        if (entry.getKey().toString().equals(header)) cell = entry.getValue();
+                    }
+                    assertDecodes(cell, decodedRow.get(header), shape.types().get(c), typed, path + "[" + i + "]." + header);
+                }
+            }
+        } else {
+            assertEquals(expectedScalar(original, column), decoded, path);
+        }
+    }
+
+    private static Object expectedScalar(Object value, ToonSchema.Type column) {
+        if (value instanceof BigInteger) {
+            BigInteger big = (BigInteger) value;
+            return big.bitLength() < 64 ? (Object) big.longValue() : big;
+        }
+        if (value instanceof Number && ToonNumbers.isIntegral((Number) value)) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigDecimal) {
+            // Integers in plain digits read back as integers; the rest as the nearest double, or unchanged when
+            // that would be infinity or zero
+            BigDecimal decimal = ((BigDecimal) value).stripTrailingZeros();
+            if (decimal.signum() == 0) return 0L;
+            if (decimal.scale() <= 0 && -decimal.scale() <= 17) {
+                return expectedScalar(decimal.toBigIntegerExact(), column);
+            }
+            double d = decimal.doubleValue();
+            return Double.isInfinite(d) || d == 0 ? decimal : (Object) d;
+        }
+        if (value instanceof Double) {
+            double d = (Double) value;
+            if (Double.isNaN(d) || Double.isInfinite(d)) return null;
+            // -0 is written as 0
+            if (d == 0) d = 0.0;
+            if (column == ToonSchema.Type.FLOAT) return d;
+            if (d == Math.rint(d) && Math.abs(d) < 1e18) {
+                // Exact below 2^53; above it the shortest digits may differ from (long) d, but read back as d
+                long shortest = Long.parseLong(canonical(d));
+                assertEquals(d, (double) shortest, "integral double " + d);
+                return shortest;
+            }
+            return d;
+        }
+        if (value == null || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        return fail("unexpected value type " + value.getClass().getName());
+    }
+
+    private static String canonical(double d) {
+        StringBuilder sb = new StringBuilder();
+        ToonNumbers.appendDouble(d, sb);
+        return sb.toString();
+    }
+
+    private static <T> T cast(Object value, Class<T> type, String path) {
+        assertTrue(type.isInstance(value), path + " expected a " + type.getSimpleName() + " but got " + value);
+        return type.cast(value);
+    }
+}
@@ -0,0 +1,62 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToonBatchCodecTest {
+    @Test
+    void asyncCallsMatchSyncCallsInOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ToonBatchCodec codec = new ToonBatchCodec(new ToonConfig(), executor);
+            List<Object> documents = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                documents.add(document(i));
+            }
+
+            List<String> encoded = codec.encodeAll(documents);
+            // Repeated calls reuse each pool thread's worker, so a stale buffer would show up as a mismatch here
+            for (int round = 0; round < 3; round++) {
+                assertEquals(encoded, codec.encodeAllAsync(documents).join());
+                assertEquals(codec.decodeAll(encoded), codec.decodeAllAsync(encoded).join());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Set by the java21 profile, which reruns this class against the packaged multi-release jar
+    @Test
+    @EnabledIfSystemProperty(named = "toon.multiReleaseJar", matches = "true")
+    void defaultExecutorUsesVirtualThreadsOnJava21() throws Exception {
+        Thread[] ran = new Thread[1];
+        CompletableFuture.runAsync(() -> ran[0] = Thread.currentThread(), ToonExecutors.defaultExecutor()).join();
+        assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(ran[0]), ran[0].toString());
+
+        List<Object> documents = List.of(document(1), document(2));
+        ToonBatchCodec codec = new ToonBatchCodec();
+        assertEquals(codec.encodeAll(documents), codec.encodeAllAsync(documents).join());
+    }
+
+    private static Map<String, Object> document(int id) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("x", id);
+        row.put("y", "v" + id);
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("id", id);
+        document.put("name", "doc " + id);
+        document.put("rows", List.of(row, row));
+        return document;
+    }
+}
@@ -0,0 +1,265 @@
+package com.freakynit.toon;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Random documents, configs and mutations for the round-trip, fuzz and throughput tests. Values lean on the
+// edges of the format: strings that look like numbers, keywords or headers, delimiters, control characters,
+// longs at the range limits, BigIntegers, and doubles from subnormal to MAX_VALUE.
+final class ToonDocuments {
+    private static final int MAX_DEPTH = 4;
+    private static final String[] DELIMITERS = {",", "|", "\t"};
+    static final String[] FRAGMENTS = {
+            "", " ", "a", "Alice", "x y", "true", "false", "null", "42", "-7", "3.14", "1e5", "05", "-", "- x",
+            "[1]", "{x}", "[2]{a,b}:", ":", "a:b", ",", "|", "\t", "\"", "\\", "\\n", "\n", "\r", "#", "é", "日本",
+            "😀", "\u0001", " lead", "trail "
+    };
+    private static final String[] KEYS = {"id", "name", "value", "tags", "a", "b_c", "x1"};
+
+    private final Random random;
+
+    ToonDocuments(long seed) {
+        this.random = new Random(seed);
+    }
+
+    Random random() {
+        return random;
+    }
+
+    Object document() {
+        return random.nextInt(6) == 0 ? list(1) : map(0);
+    }
+
+    ToonConfig config() {
+        return config(DELIMITERS[random.nextInt(DELIMITERS.length)], 1 + random.nextInt(4),
+                random.nextBoolean() ? "" : "#", random.nextInt(4) == 0);
+    }
+
+    // A fresh config with the same format settings, for variants such as strict decoding or a fragment cache
+    static ToonConfig copy(ToonConfig config) {
+        return config(config.getDelimiter(), config.getIndent(), config.getLengthMarker(), config.isTypedHeaders());
+    }
+
+    static String describe(ToonConfig config) {
+        String delimiter = "\t".equals(config.getDelimiter()) ? "\\t" : config.getDelimiter();
+        return "(delimiter '" + delimiter + "', indent " + config.getIndent() + ", marker '" + config.getLengthMarker()
+                + "'" + (config.isTypedHeaders() ? ", typed" : "") + ")";
+    }
+
+    private static ToonConfig config(String delimiter, int indent, String marker, boolean typed) {
+        ToonConfig config = new ToonConfig(delimiter, indent, marker);
+        config.setTypedHeaders(typed);
+        return config;
+    }
+
+    // Marks a random half of the direct child containers, so cached and freshly encoded fragments mix
+    void markSubtrees(Object node, ToonFragmentCache cache) {
+        Iterable<?> children = node instanceof Map ? ((Map<?, ?>) node).values() : node instanceof List ? (List<?>) node : null;
+        if (children == null) {
+            return;
+        }
+        for (Object child : children) {
+            if ((child instanceof Map || child instanceof List) && random.nextBoolean()) {
+                cache.markImmutable(child);
+            }
+        }
+    }
+
+    private Map<String, Object> map(int depth) {
+        int size = random.nextInt(depth == 0 ? 8 : 5);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(key(), value(depth + 1));
+        }
+        return map;
+    }
+
+    private Object value(int depth) {
+        switch (random.nextInt(depth >= MAX_DEPTH ? 5 : 8)) {
+            case 0:
+                return random.nextInt(3) == 0 ? null : random.nextBoolean();
+            case 1:
+                return longValue();
+            case 2:
+                return doubleValue();
+            case 3:
+            case 4:
+                return string();
+            case 5:
+                return map(depth);
+            case 6:
+                return list(depth);
+            default:
+                return table();
+        }
+    }
+
+    private List<Object> list(int depth) {
+        int size = random.nextInt(6);
+        List<Object> list = new ArrayList<>(size);
+        boolean scalars = random.nextBoolean();
+        for (int i = 0; i < size; i++) {
+            list.add(scalars ? value(MAX_DEPTH) : value(depth + 1));
+        }
+        return list;
+    }
+
+    private List<Object> table() {
+        List<String> columns = new ArrayList<>();
+        int width = 1 + random.nextInt(4);
+        for (int i = 0; i < width; i++) {
+            columns.add(key());
+        }
+        int rows = 1 + random.nextInt(5);
+        List<Object> table = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            table.add(row(columns));
+        }
+        return table;
+    }
+
+    private Map<String, Object> row(List<String> columns) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String column : columns) {
+            row.put(column, value(MAX_DEPTH));
+        }
+        return row;
+    }
+
+    private Object longValue() {
+        switch (random.nextInt(6)) {
+            case 0:
+                return random.nextBoolean() ? Long.MAX_VALUE : Long.MIN_VALUE;
+            case 1:
+                return random.nextLong();
+            case 2:
+                return new BigInteger(80, random).negate();
+            default:
+                return (long) random.nextInt(2000) - 1000;
+        }
+    }
+
+    private Object doubleValue() {
+        switch (random.nextInt(8)) {
+            case 0:
+                return -0.0;
+            case 1:
+                return Double.longBitsToDouble(random.nextLong());
+            case 2:
+                return random.nextBoolean() ? Double.MIN_VALUE : Double.MAX_VALUE;
+            case 3:
+                return (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+            default:
+                return Math.round(random.nextDouble() * 100_000) / 100.0;
+        }
+    }
+
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        int parts = random.nextInt(3) + 1;
+        for (int i = 0; i < parts; i++) {
+            sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private String key() {
+        return random.nextInt(4) == 0 ? string() : KEYS[random.nextInt(KEYS.length)];
+    }
+
+    // Line-level edits that keep most of the structure, so the decoder gets past the first line
+    String mutate(String toon) {
+        List<String> lines = new ArrayList<>(Arrays.asList(toon.split("\n", -1)));
+        int edits = 1 + random.nextInt(3);
+        for (int e = 0; e < edits && !lines.isEmpty(); e++) {
+            int at = random.nextInt(lines.size());
+            String line = lines.get(at);
+            switch (random.nextInt(6)) {
+                case 0:
+                    lines.remove(at);
+                    break;
+                case 1:
+                    lines.add(at, line);
+                    break;
+                case 2:
+                    lines.set(at, " ".repeat(random.nextInt(6)) + line.trim());
+                    break;
+                case 3:
+                    lines.set(at, line.substring(0, random.nextInt(line.length() + 1)));
+                    break;
+                case 4: {
+                    int pos = random.nextInt(line.length() + 1);
+                    String fragment = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+                    lines.set(at, line.substring(0, pos) + fragment + line.substring(pos));
+                    break;
+                }
+                default:
+                    lines.set(at, line.replaceFirst("\\[#?\\d+", "[" + (random.nextBoolean() ? "#" : "") + random.nextInt(1 << 30)));
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    byte[] mutate(byte[] binary) {
+        byte[] mutated = binary;
+        int edits = 1 + random.nextInt(3);
+        for (int e = 0; e < edits && mutated.length > 0; e++) {
+            int at = random.nextInt(mutated.length);
+            switch (random.nextInt(4)) {
+                case 0:
+                    mutated = Arrays.copyOf(mutated, at);
+                    break;
+                case 1:
+                    mutated[at] = (byte) random.nextInt(256);
+                    break;
+                case 2:
+                    mutated[at] ^= 1 << random.nextInt(8);
+                    break;
+                default: {
+                    byte[] grown = new byte[mutated.length + 1];
+                    System.arraycopy(mutated, 0, grown, 0, at);
+                    grown[at] = (byte) random.nextInt(256);
+                    System.arraycopy(mutated, at, grown, at + 1, mutated.length - at);
+                    mutated = grown;
+                }
+            }
+        }
+        return mutated;
+    }
+
+    // Typical API-style data: one large uniform table plus nested records with short strings and small numbers
+    static Map<String, Object> corpus(Random random) {
+        List<Object> rows = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("name", "user" + random.nextInt(100_000));
+            row.put("score", Math.round(random.nextDouble() * 10_000) / 100.0);
+            row.put("active", random.nextBoolean());
+            row.put("note", random.nextInt(4) == 0 ? null : FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            rows.add(row);
+        }
+        List<Object> nested = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Map<String, Object> address = new LinkedHashMap<>();
+            address.put("city", "City " + random.nextInt(500));
+            address.put("zip", String.format("%05d", random.nextInt(100_000)));
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("id", random.nextLong());
+            record.put("tags", Arrays.asList("t" + random.nextInt(10), "t" + random.nextInt(10)));
+            record.put("address", address);
+            record.put("history", Arrays.asList(random.nextInt(1000), Collections.singletonMap("at", random.nextInt())));
+            nested.add(record);
+        }
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("rows", rows);
+        document.put("nested", nested);
+        return document;
+    }
+}
@@ -0,0 +1,53 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ToonFragmentCacheTest {
+    // The subtree is changed behind the cache's back, so only text served from the cache still shows the old rows
+    @Test
+    void keepsOneRenderingPerContextAndConfig() {
+        ToonFragmentCache cache = new ToonFragmentCache();
+        List<Object> rows = new ArrayList<>(List.of(row(1), row(2)));
+        cache.markImmutable(rows);
+        Map<String, Object> keyed = new LinkedHashMap<>();
+        keyed.put("rows", rows);
+
+        ToonConfig comma = new ToonConfig();
+        comma.setFragmentCache(cache);
+        ToonConfig pipe = new ToonConfig();
+        pipe.setDelimiter("|");
+        pipe.setFragmentCache(cache);
+        ToonEncoder commaEncoder = new ToonEncoder(comma);
+        ToonEncoder pipeEncoder = new ToonEncoder(pipe);
+
+        String commaRoot = commaEncoder.encode(rows);
+        String commaKeyed = commaEncoder.encode(keyed);
+        String pipeRoot = pipeEncoder.encode(rows);
+        String pipeKeyed = pipeEncoder.encode(keyed);
+        assertNotEquals(commaRoot, pipeRoot);
+
+        rows.add(row(3));
+        assertEquals(commaRoot, commaEncoder.encode(rows));
+        assertEquals(commaKeyed, commaEncoder.encode(keyed));
+        assertEquals(pipeRoot, pipeEncoder.encode(rows));
+        assertEquals(pipeKeyed, pipeEncoder.encode(keyed));
+
+        cache.unmark(rows);
+        assertNotEquals(commaRoot, commaEncoder.encode(rows));
+    }
+
+    private static Map<String, Object> row(int id) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("name", "n" + id);
+        return row;
+    }
+}
@@ -0,0 +1,92 @@
+package com.freakynit.toon;
+
+import com.code_intelligence.jazzer.junit.FuzzTest;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Untrusted input may only be rejected with a ToonException; any other exception, or output that does not
+// survive its own re-encoding, is a bug. Plain "mvn test" replays the inputs under ToonFuzzTestInputs and a run
+// of mutated random documents; JAZZER_FUZZ=1 mvn test -Dtest=ToonFuzzTest fuzzes with coverage guidance.
+class ToonFuzzTest {
+    private static final int ITERATIONS = Integer.getInteger("toon.iterations", 500);
+
+    @FuzzTest
+    void decode(byte[] data) {
+        ToonConfig config = untrusted();
+        String toon = new String(data, StandardCharsets.UTF_8);
+        Object decoded;
+        try {
+            decoded = new ToonDecoder(config).decode(toon);
+        } catch (ToonException e) {
+            return;
+        }
+        assertEquals(decoded, new ToonDecoder(config).decode(new StringReader(toon)), "String and Reader decoding disagree");
+
+        String encoded = new ToonEncoder(config).encode(decoded);
+        ToonAssertions.assertDecodes(decoded, new ToonDecoder(config).decode(encoded), config);
+
+        // Binary counts strings in bytes rather than chars, so the conversion runs without limits
+        ToonBinary binary = new ToonBinary();
+        assertEquals(decoded, binary.decode(binary.fromText(toon)), "Text converted to binary decodes differently");
+    }
+
+    @FuzzTest
+    void decodeBinary(byte[] data) {
+        ToonBinary binary = new ToonBinary(untrusted());
+        Object decoded;
+        try {
+            decoded = binary.decode(data);
+        } catch (ToonException e) {
+            return;
+        }
+        assertEquals(decoded, binary.decode(binary.encode(decoded)), "Decoded binary document changes when re-encoded");
+
+        // A lone scalar line decodes as an empty object, so only containers survive the trip through text
+        if (decoded instanceof Map || decoded instanceof List) {
+            ToonConfig config = new ToonConfig();
+            ToonAssertions.assertDecodes(decoded, new ToonDecoder(config).decode(binary.toText(data)), config);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4})
+    void survivesMutatedDocuments(long seed) {
+        ToonDocuments documents = new ToonDocuments(seed);
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] input;
+            if (documents.random().nextInt(10) == 0) {
+                input = new byte[documents.random().nextInt(64)];
+                documents.random().nextBytes(input);
+            } else {
+                input = documents.mutate(new ToonEncoder(documents.config()).encode(documents.document()))
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+            try {
+                decode(input);
+            } catch (AssertionError | RuntimeException | StackOverflowError e) {
+                throw new AssertionError("seed " + seed + " input #" + i + ":\n" + new String(input, StandardCharsets.UTF_8), e);
+            }
+
+            byte[] binary = documents.mutate(new ToonBinary().encode(documents.document()));
+            try {
+                decodeBinary(binary);
+            } catch (AssertionError | RuntimeException | StackOverflowError e) {
+                throw new AssertionError("seed " + seed + " binary input #" + i + ": " + Arrays.toString(binary), e);
+            }
+        }
+    }
+
+    private static ToonConfig untrusted() {
+        ToonConfig config = new ToonConfig();
+        config.setLimits(ToonLimits.untrusted());
+        return config;
+    }
+}
@@ -0,0 +1,59 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToonJmxMetricsTest {
+    private static final String NAME = "com.freakynit.toon:type=ToonMetrics,name=ToonJmxMetricsTest";
+
+    // Read through the platform MBean server, the way a JMX console sees the counters
+    @Test
+    void exposesTotalsThroughThePlatformServer() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(NAME);
+        ToonJmxMetrics metrics = ToonJmxMetrics.register(NAME);
+        try {
+            assertTrue(server.isRegistered(name));
+            assertThrows(IllegalStateException.class, () -> ToonJmxMetrics.register(NAME));
+
+            ToonConfig config = new ToonConfig();
+            config.setMetricsListener(metrics);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", 1);
+            row.put("name", "é");
+            Map<String, Object> document = Collections.singletonMap("users", Arrays.asList(row, row));
+            String toon = new ToonEncoder(config).encode(document);
+            new ToonDecoder(config).decode(toon);
+            new ToonDecoder(config).decode(toon);
+
+            long bytes = toon.getBytes(StandardCharsets.UTF_8).length;
+            assertEquals(1L, server.getAttribute(name, "EncodeCount"));
+            assertEquals(2L, server.getAttribute(name, "DecodeCount"));
+            assertEquals(bytes, server.getAttribute(name, "EncodeOutputBytes"));
+            assertEquals(2 * bytes, server.getAttribute(name, "DecodeInputBytes"));
+            assertEquals(2L, server.getAttribute(name, "RowsEncoded"));
+            assertEquals(4L, server.getAttribute(name, "RowsDecoded"));
+            assertEquals(3L, server.getAttribute(name, "TabularArrays"));
+
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "EncodeCount"));
+            assertEquals(0L, server.getAttribute(name, "DecodeInputBytes"));
+        } finally {
+            ToonJmxMetrics.unregister(NAME);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
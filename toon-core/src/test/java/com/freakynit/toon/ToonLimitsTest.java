@@ -0,0 +1,87 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Each limit is passed by one step, through both the String and the Reader decoder; the error names the limit
+// and points at the line and column where it was crossed
+class ToonLimitsTest {
+    @Test
+    void depth() {
+        ToonLimits limits = new ToonLimits();
+        limits.setMaxDepth(2);
+        assertEquals(Map.of("a", Map.of("b", 1L)), decode("a:\n  b: 1", limits));
+        assertViolation("a:\n  b:\n    c: 1", limits, "Nesting exceeds depth 2", 3, 5);
+    }
+
+    @Test
+    void lineLength() {
+        ToonLimits limits = new ToonLimits();
+        limits.setMaxLineLength(20);
+        assertViolation("a: 1\nb: " + "x".repeat(20), limits, "Line exceeds 20 chars", 2, 21);
+    }
+
+    @Test
+    void stringLength() {
+        ToonLimits limits = new ToonLimits();
+        limits.setMaxStringLength(3);
+        decode("a: abc", limits);
+        assertViolation("a: abcd", limits, "String exceeds 3 chars", 1, 4);
+        assertViolation("k: 1\nv: \"abcdef\"", limits, "String exceeds 3 chars", 2, 5);
+    }
+
+    @Test
+    void arrayLength() {
+        ToonLimits limits = new ToonLimits();
+        limits.setMaxArrayLength(2);
+        decode("a: [2]: 1,2", limits);
+        assertViolation("a: [3]: 1,2,3", limits, "Array declares 3 items, limit is 2", 1, 5);
+        assertViolation("a: [3]{x}:\n  1\n  2\n  3", limits, "Array declares 3 items, limit is 2", 1, 5);
+        // A header that understates its rows is caught at the first row past the limit
+        assertViolation("a: [2]{x}:\n  1\n  2\n  3", limits, "Array exceeds 2 rows", 4, 3);
+    }
+
+    @Test
+    void documentLength() {
+        ToonLimits limits = new ToonLimits();
+        limits.setMaxDocumentLength(8);
+        decode("a: 12345", limits);
+        assertViolation("a: 123456", limits, "Document exceeds 8 chars", 1, 1);
+    }
+
+    @Test
+    void untrustedLimitsAreTighterThanTheDefaults() {
+        ToonLimits defaults = new ToonLimits();
+        ToonLimits untrusted = ToonLimits.untrusted();
+        assertTrue(untrusted.getMaxDepth() < defaults.getMaxDepth());
+        assertTrue(untrusted.getMaxLineLength() < defaults.getMaxLineLength());
+        assertTrue(untrusted.getMaxDocumentLength() < defaults.getMaxDocumentLength());
+        assertTrue(untrusted.getMaxArrayLength() < defaults.getMaxArrayLength());
+        assertTrue(untrusted.getMaxStringLength() < defaults.getMaxStringLength());
+        assertThrows(IllegalArgumentException.class, () -> defaults.setMaxDepth(0));
+    }
+
+    private static Object decode(String toon, ToonLimits limits) {
+        ToonConfig config = new ToonConfig();
+        config.setLimits(limits);
+        return new ToonDecoder(config).decode(toon);
+    }
+
+    private static void assertViolation(String toon, ToonLimits limits, String message, int line, int column) {
+        ToonConfig config = new ToonConfig();
+        config.setLimits(limits);
+        ToonException fromString = assertThrows(ToonException.class, () -> new ToonDecoder(config).decode(toon));
+        ToonException fromReader = assertThrows(ToonException.class, () -> new ToonDecoder(config).decode(new StringReader(toon)));
+        for (ToonException e : new ToonException[]{fromString, fromReader}) {
+            assertTrue(e.getMessage().startsWith(message), e.getMessage());
+            assertEquals(line, e.getLine(), e.getMessage());
+            assertEquals(column, e.getColumn(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToonMetricsTest {
+    @Test
+    void reportsUtf8BytesOfTheText() {
+        Recorder recorder = new Recorder();
+        ToonConfig config = new ToonConfig();
+        config.setMetricsListener(recorder);
+        String toon = "name: é\nicon: 😀";
+
+        assertEquals(toon, new ToonEncoder(config).encode(document("é", "😀")));
+        new ToonDecoder(config).decode(toon);
+        new ToonDecoder(config).decode(new StringReader(toon));
+
+        long bytes = toon.getBytes(StandardCharsets.UTF_8).length;
+        ToonMetrics encode = recorder.encodes.remove();
+        assertEquals(bytes, encode.getOutputBytes());
+        assertEquals(0, encode.getInputBytes());
+        for (ToonMetrics decode : recorder.decodes) {
+            assertEquals(bytes, decode.getInputBytes());
+            assertEquals(0, decode.getOutputBytes());
+        }
+    }
+
+    // Two threads share one encoder and one decoder; every call must report its own document's counts
+    @Test
+    void keepsCountsPerCallOnSharedInstances() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        ToonConfig config = new ToonConfig();
+        config.setMetricsListener(recorder);
+        ToonEncoder encoder = new ToonEncoder(config);
+        ToonDecoder decoder = new ToonDecoder(config);
+        List<Object> documents = List.of(table(3), table(40));
+        List<String> texts = List.of(encoder.encode(documents.get(0)), encoder.encode(documents.get(1)));
+        recorder.encodes.clear();
+        recorder.decodes.clear();
+
+        int calls = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        for (int t = 0; t < 2; t++) {
+            int which = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < calls; i++) {
+                        encoder.encode(documents.get(which));
+                        decoder.decode(texts.get(which));
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(2 * calls, recorder.encodes.size());
+        assertEquals(2 * calls, recorder.decodes.size());
+        for (ToonMetrics metrics : recorder.encodes) {
+            int which = metrics.getRows() == 3 ? 0 : 1;
+            assertEquals(which == 0 ? 3 : 40, metrics.getRows());
+            assertEquals(texts.get(which).length(), metrics.getOutputBytes());
+        }
+        for (ToonMetrics metrics : recorder.decodes) {
+            int which = metrics.getRows() == 3 ? 0 : 1;
+            assertEquals(which == 0 ? 3 : 40, metrics.getRows());
+            assertEquals(texts.get(which).length(), metrics.getInputBytes());
+        }
+    }
+
+    private static Map<String, Object> document(String name, String icon) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("name", name);
+        document.put("icon", icon);
+        return document;
+    }
+
+    private static Map<String, Object> table(int rows) {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("name", "user" + i);
+            list.add(row);
+        }
+        return Collections.singletonMap("rows", list);
+    }
+
+    static final class Recorder implements ToonMetricsListener {
+        final Queue<ToonMetrics> encodes = new ConcurrentLinkedQueue<>();
+        final Queue<ToonMetrics> decodes = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void onEncode(ToonMetrics metrics) {
+            encodes.add(metrics);
+        }
+
+        @Override
+        public void onDecode(ToonMetrics metrics) {
+            decodes.add(metrics);
+        }
+    }
+}
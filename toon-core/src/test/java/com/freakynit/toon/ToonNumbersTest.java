@@ -0,0 +1,105 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ToonNumbersTest {
+    // Plain from 1e-6 up to below 1e18, otherwise shortest digits with an exponent; integral values drop the fraction
+    @ParameterizedTest
+    @CsvSource({
+            "0.0, 0",
+            "-0.0, 0",
+            "-1.5, -1.5",
+            "0.1, 0.1",
+            "1.0E-6, 0.000001",
+            "1.0E-7, 1e-7",
+            "9.999999E-7, 9.999999e-7",
+            "1.0E17, 100000000000000000",
+            "1.2345678901234568E17, 123456789012345680",
+            "1.0E18, 1e18",
+            "1.0E23, 1e23",
+            "4.9E-324, 4.9e-324",
+            "1.7976931348623157E308, 1.7976931348623157e308",
+    })
+    void writesDoubles(double value, String expected) {
+        StringBuilder sb = new StringBuilder();
+        ToonNumbers.appendDouble(value, sb);
+        assertEquals(expected, sb.toString());
+    }
+
+    @Test
+    void writesNonFiniteValuesAsNull() {
+        for (Number value : new Number[]{Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Float.NaN}) {
+            StringBuilder sb = new StringBuilder();
+            ToonNumbers.append(value, sb);
+            assertEquals("null", sb.toString(), value.toString());
+        }
+    }
+
+    // Floats are written with the shortest digits that identify the float, not the double it widens to
+    @Test
+    void writesFloatsByTheirOwnDigits() {
+        StringBuilder sb = new StringBuilder();
+        ToonNumbers.appendFloat(1.1f, sb);
+        sb.append(' ');
+        ToonNumbers.appendFloat(3.4028235e38f, sb);
+        assertEquals("1.1 3.4028235e38", sb.toString());
+    }
+
+    @Test
+    void parsesEachLiteralToTheNarrowestExactType() {
+        assertEquals(0L, parse("-0"));
+        assertEquals(-0.0, parse("-0.0"));
+        assertEquals(Long.MAX_VALUE, parse("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE, parse("-9223372036854775808"));
+        assertEquals(new BigInteger("9223372036854775808"), parse("9223372036854775808"));
+        assertEquals(100000.0, parse("1E5"));
+        assertEquals(new BigDecimal("1e400"), parse("1e400"));
+        assertEquals(new BigDecimal("-1e400"), parse("-1e400"));
+        assertEquals(new BigDecimal("1e-400"), parse("1e-400"));
+        assertEquals(0.0, parse("0e-400"));
+        assertEquals(Double.MIN_VALUE, parse("4.9e-324"));
+        // Below half of the smallest subnormal a double rounds to zero, so the literal stays a BigDecimal
+        assertEquals(new BigDecimal("2.4703282292062327e-324"), parse("2.4703282292062327e-324"));
+        assertEquals(Double.MIN_VALUE, parse("2.4703282292062328e-324"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", "1.", ".5", "1e", "1e+", "1.5e", "+1", "1_000", "0x10", "1e99999999999"})
+    void rejectsAnythingElse(String literal) {
+        assertNull(parse(literal));
+    }
+
+    // The fast path must round exactly as Double.parseDouble does, including long mantissas, and what
+    // appendDouble writes must read back as the same double
+    @Test
+    void parsesDoublesLikeTheJdk() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(value) || Double.isInfinite(value)) continue;
+            String text = random.nextBoolean() ? Double.toString(value) : new BigDecimal(value).toString();
+            Number parsed = parse(text);
+            double expected = Double.parseDouble(text);
+            assertEquals(expected, parsed.doubleValue(), text);
+
+            StringBuilder sb = new StringBuilder();
+            ToonNumbers.appendDouble(value, sb);
+            // Negative zero is written as 0
+            assertEquals(value == 0 ? 0.0 : value, parse(sb.toString()).doubleValue(), sb.toString());
+        }
+    }
+
+    private static Number parse(String literal) {
+        return ToonNumbers.parse(literal, 0, literal.length());
+    }
+}
@@ -0,0 +1,180 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToonRowProcessorTest {
+    private static final List<String> HEADERS = Arrays.asList("id", "name");
+
+    @Test
+    void pullsOnlyTheRowsDownstreamAskedFor() {
+        RowSource source = new RowSource(5);
+        ToonRowProcessor processor = new ToonRowProcessor(HEADERS, "users", 5, new ToonConfig());
+        Sink sink = new Sink();
+        source.subscribe(processor);
+        processor.subscribe(sink);
+
+        // The header answers the first request, so no row is pulled yet
+        sink.subscription.request(1);
+        assertEquals(List.of("users: [5]{id,name}:"), sink.chunks);
+        assertEquals(0, source.requested);
+
+        sink.subscription.request(2);
+        assertEquals(List.of("users: [5]{id,name}:", "\n  0,row0", "\n  1,row1"), sink.chunks);
+        assertEquals(2, source.requested);
+
+        // Demand passes upstream one for one, even past the rows still to come
+        sink.subscription.request(10);
+        assertEquals(12, source.requested);
+        assertEquals(6, sink.chunks.size());
+        assertTrue(sink.completed);
+        assertNull(sink.error);
+    }
+
+    @Test
+    void cancelStopsTheStreamAndTheUpstream() {
+        RowSource source = new RowSource(100);
+        ToonRowProcessor processor = new ToonRowProcessor(HEADERS, null, 100, new ToonConfig());
+        Sink sink = new Sink();
+        source.subscribe(processor);
+        processor.subscribe(sink);
+
+        sink.subscription.request(3);
+        assertEquals(3, sink.chunks.size());
+        sink.subscription.cancel();
+        assertTrue(source.cancelled);
+
+        // Late rows and further requests after cancel reach neither side
+        processor.onNext(Arrays.asList(7, "late"));
+        sink.subscription.request(5);
+        assertEquals(3, sink.chunks.size());
+        assertEquals(2, source.requested);
+        assertFalse(sink.completed);
+        assertNull(sink.error);
+    }
+
+    @Test
+    void bufferedRowsWaitForCompletion() {
+        RowSource source = new RowSource(3);
+        ToonRowProcessor processor = ToonRowProcessor.bufferUntilComplete(HEADERS, "users", new ToonConfig());
+        Sink sink = new Sink();
+        source.subscribe(processor);
+        processor.subscribe(sink);
+
+        sink.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of("users: [3]{id,name}:\n  0,row0\n  1,row1\n  2,row2"), sink.chunks);
+        assertTrue(sink.completed);
+    }
+
+    // Buffering stops at the row limit instead of holding an endless publisher in memory
+    @Test
+    void bufferedRowsFailPastTheLimit() {
+        RowSource source = new RowSource(Integer.MAX_VALUE);
+        ToonRowProcessor processor = ToonRowProcessor.bufferUntilComplete(HEADERS, "users", new ToonConfig(), 300);
+        Sink sink = new Sink();
+        source.subscribe(processor);
+        processor.subscribe(sink);
+
+        sink.subscription.request(Long.MAX_VALUE);
+        assertTrue(sink.error instanceof IllegalStateException, String.valueOf(sink.error));
+        assertEquals("Buffered rows exceed the limit of 300", sink.error.getMessage());
+        assertTrue(source.cancelled);
+        assertEquals(300, processor.getRowCount());
+        assertTrue(sink.chunks.isEmpty());
+
+        ToonConfig config = new ToonConfig();
+        config.setLimits(ToonLimits.untrusted());
+        assertEquals(config.getLimits().getMaxArrayLength(),
+                ToonRowProcessor.bufferUntilComplete(HEADERS, null, config).getMaxRows());
+    }
+
+    @Test
+    void failsWhenThePublisherProducesMoreRowsThanDeclared() {
+        RowSource source = new RowSource(3);
+        ToonRowProcessor processor = new ToonRowProcessor(HEADERS, null, 2, new ToonConfig());
+        Sink sink = new Sink();
+        source.subscribe(processor);
+        processor.subscribe(sink);
+
+        sink.subscription.request(Long.MAX_VALUE);
+        assertTrue(sink.error instanceof IllegalStateException, String.valueOf(sink.error));
+        assertTrue(source.cancelled);
+        assertFalse(sink.completed);
+    }
+
+    // Emits rows synchronously as they are requested and records how many were asked for
+    static final class RowSource implements Flow.Publisher<Object> {
+        private final int total;
+        long requested;
+        boolean cancelled;
+        private boolean completed;
+        private int emitted;
+        private boolean emitting;
+
+        RowSource(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Object> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    if (emitting || completed) return;
+                    emitting = true;
+                    while (!cancelled && emitted < Math.min(total, requested)) {
+                        subscriber.onNext(Arrays.asList(emitted, "row" + emitted));
+                        emitted++;
+                    }
+                    emitting = false;
+                    if (!cancelled && emitted == total) {
+                        completed = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    static final class Sink implements Flow.Subscriber<String> {
+        final List<String> chunks = new ArrayList<>();
+        Flow.Subscription subscription;
+        boolean completed;
+        Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String item) {
+            chunks.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
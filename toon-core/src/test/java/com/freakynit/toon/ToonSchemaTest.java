@@ -0,0 +1,98 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToonSchemaTest {
+    private static final ToonSchema USERS = ToonSchema.parse("{id:int,score:float,name}");
+
+    @Test
+    void parsesAndPrintsTheSpec() {
+        assertEquals(Arrays.asList("id", "score", "name"), USERS.getColumns());
+        assertEquals(Arrays.asList(ToonSchema.Type.INT, ToonSchema.Type.FLOAT, ToonSchema.Type.ANY), USERS.getTypes());
+        assertEquals("{id:int,score:float,name}", USERS.toString());
+        assertThrows(IllegalArgumentException.class, () -> ToonSchema.parse("id:long"));
+        assertThrows(IllegalArgumentException.class, () -> ToonSchema.parse("id,id"));
+    }
+
+    // A row without a schema column is written as null in that cell and reads back as an explicit null
+    @Test
+    void missingKeysBecomeNullCells() {
+        ToonConfig config = config();
+        Map<String, Object> document = Collections.singletonMap("users", Arrays.asList(
+                row(1, 2.5, "a"), row(2, 3.5, null)));
+        ((Map<?, ?>) ((List<?>) document.get("users")).get(1)).remove("name");
+
+        String toon = new ToonEncoder(config).encode(document);
+        assertEquals("users: [2]{id,score,name}:\n  1,2.5,a\n  2,3.5,null", toon);
+        assertEquals(Collections.singletonMap("users", Arrays.asList(row(1, 2.5, "a"), row(2, 3.5, null))),
+                new ToonDecoder(config).decode(toon));
+    }
+
+    // Integral values fit a float column; they are written without a fraction and read back as Double, while a
+    // value past the double range stays exact
+    @Test
+    void floatColumnsCoerceIntegralCells() {
+        ToonConfig config = config();
+        Map<String, Object> document = Collections.singletonMap("users", Arrays.asList(
+                row(1, 2, "a"), row(2, new BigDecimal("1e400"), "b")));
+
+        String toon = new ToonEncoder(config).encode(document);
+        assertEquals("users: [2]{id,score,name}:\n  1,2,a\n  2,1e400,b", toon);
+        Object decoded = new ToonDecoder(config).decode(toon);
+        assertEquals(Collections.singletonMap("users", Arrays.asList(row(1, 2.0, "a"), row(2, new BigDecimal("1e400"), "b"))),
+                decoded);
+        // Without the schema the same text reads the integral cell as a Long
+        assertEquals(2L, ((Map<?, ?>) ((List<?>) ((Map<?, ?>) new ToonDecoder().decode(toon)).get("users")).get(0)).get("score"));
+    }
+
+    @Test
+    void cellsThatDoNotFitTheColumnAreRejected() {
+        ToonConfig config = config();
+        ToonException e = assertThrows(ToonException.class,
+                () -> new ToonDecoder(config).decode("users: [1]{id,score,name}:\n  1,abc,x"));
+        assertTrue(e.getMessage().startsWith("Column 'score' is declared float but holds 'abc'"), e.getMessage());
+        assertEquals(2, e.getLine());
+        assertEquals(5, e.getColumn());
+
+        e = assertThrows(ToonException.class, () -> new ToonDecoder(config).decode("users: [1]{id,score,name}:\n  1.5,2,x"));
+        assertTrue(e.getMessage().startsWith("Column 'id' is declared int but holds '1.5'"), e.getMessage());
+    }
+
+    // A row the schema does not accept is written as an ordinary table, so nothing is forced into the wrong type
+    @Test
+    void rowsOutsideTheSchemaAreWrittenWithoutIt() {
+        ToonConfig config = config();
+        Map<String, Object> odd = row(1, 2.5, "a");
+        odd.put("extra", true);
+        Map<String, Object> document = Collections.singletonMap("users", Arrays.asList(odd));
+
+        String toon = new ToonEncoder(config).encode(document);
+        assertEquals("users: [1]{id,score,name,extra}:\n  1,2.5,a,true", toon);
+        assertEquals(document, new ToonDecoder(config).decode(toon));
+    }
+
+    private static ToonConfig config() {
+        ToonConfig config = new ToonConfig();
+        config.registerSchema("users", USERS);
+        return config;
+    }
+
+    private static Map<String, Object> row(long id, Object score, String name) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("score", score);
+        row.put("name", name);
+        return row;
+    }
+}
@@ -0,0 +1,119 @@
+package com.freakynit.toon;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Best-of-N MB/s over a fixed corpus, so numbers are comparable between runs on the same machine. Opt-in:
+//   mvn test -Pthroughput [-Dtoon.baseline=perf.properties] [-Dtoon.saveBaseline=true]
+//                         [-Dtoon.tolerance=20] [-Dtoon.rounds=10]
+// With a baseline, any measurement more than the tolerance (in percent) below it fails the test. A relative
+// baseline path resolves against toon-core/.
+@Tag("throughput")
+class ToonThroughputTest {
+    @Test
+    void staysWithinBaseline() throws IOException {
+        String baselineProperty = System.getProperty("toon.baseline");
+        Path baseline = baselineProperty == null || baselineProperty.isEmpty() ? null : Paths.get(baselineProperty);
+        boolean save = Boolean.getBoolean("toon.saveBaseline");
+        double tolerance = Double.parseDouble(System.getProperty("toon.tolerance", "20")) / 100;
+        int rounds = Integer.getInteger("toon.rounds", 10);
+
+        Map<String, Object> document = ToonDocuments.corpus(new Random(42));
+        ToonConfig config = new ToonConfig();
+        String toon = new ToonEncoder(config).encode(document);
+        double megabytes = toon.getBytes(StandardCharsets.UTF_8).length / 1e6;
+
+        Map<String, Double> measured = new LinkedHashMap<>();
+        measured.put("encode", megabytes / bestSeconds(rounds, () -> new ToonEncoder(config).encode(document)));
+        measured.put("decode", megabytes / bestSeconds(rounds, () -> new ToonDecoder(config).decode(toon)));
+        measured.put("decode.reader", megabytes / bestSeconds(rounds, () -> new ToonDecoder(config).decode(new StringReader(toon))));
+        measured.put("stream", megabytes / bestSeconds(rounds, () -> {
+            StringWriter writer = new StringWriter(toon.length());
+            try (ToonStreamWriter out = new ToonStreamWriter(writer, config)) {
+                out.value(document);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+
+        ToonBinary binary = new ToonBinary(config);
+        byte[] encoded = binary.encode(document);
+        double binaryMegabytes = encoded.length / 1e6;
+        measured.put("binary.encode", binaryMegabytes / bestSeconds(rounds, () -> binary.encode(document)));
+        measured.put("binary.decode", binaryMegabytes / bestSeconds(rounds, () -> binary.decode(encoded)));
+        // Conversions are per text byte, the side they share with encode and decode
+        measured.put("binary.fromText", megabytes / bestSeconds(rounds, () -> binary.fromText(toon)));
+        measured.put("binary.toText", megabytes / bestSeconds(rounds, () -> binary.toText(encoded)));
+        System.out.println(String.format("Corpus: %.1f MB text, %.1f MB binary (%.0f%%)", megabytes, binaryMegabytes,
+                binaryMegabytes / megabytes * 100));
+
+        Properties saved = new Properties();
+        if (baseline != null && !save && Files.exists(baseline)) {
+            try (InputStream in = Files.newInputStream(baseline)) {
+                saved.load(in);
+            }
+        }
+
+        List<String> slower = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : measured.entrySet()) {
+            String line = String.format("%-16s %8.1f MB/s", entry.getKey(), entry.getValue());
+            String base = saved.getProperty(entry.getKey() + ".mbps");
+            if (base != null) {
+                double expected = Double.parseDouble(base);
+                boolean slow = entry.getValue() < expected * (1 - tolerance);
+                line += String.format("   baseline %8.1f MB/s  %+6.1f%%%s", expected,
+                        (entry.getValue() / expected - 1) * 100, slow ? "  SLOWER" : "");
+                if (slow) slower.add(entry.getKey());
+            }
+            System.out.println(line);
+        }
+
+        if (baseline != null && save) {
+            Properties out = new Properties();
+            for (Map.Entry<String, Double> entry : measured.entrySet()) {
+                out.setProperty(entry.getKey() + ".mbps", String.format("%.1f", entry.getValue()));
+            }
+            try (OutputStream stream = Files.newOutputStream(baseline)) {
+                out.store(stream, "toon throughput, " + System.getProperty("java.vm.name") + " "
+                        + System.getProperty("java.version") + ", " + System.getProperty("os.arch"));
+            }
+            System.out.println("Baseline written to " + baseline);
+        } else if (baseline != null && saved.isEmpty()) {
+            System.out.println("No baseline at " + baseline + ", run with -Dtoon.saveBaseline=true to create it");
+        }
+        assertTrue(slower.isEmpty(), "Slower than the baseline by more than " + tolerance * 100 + "%: " + slower);
+    }
+
+    private static double bestSeconds(int rounds, Runnable task) {
+        for (int i = 0; i < Math.max(3, rounds); i++) {
+            task.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            // Collect between rounds so one round's garbage is not charged to the next
+            System.gc();
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e9;
+    }
+}